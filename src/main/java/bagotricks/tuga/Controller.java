@@ -23,13 +23,20 @@ public class Controller {
     }
 
     public void newProgram() {
-        Program newProgram = library.newProgram();
+        newProgram(Library.DEFAULT_EXTENSION);
+    }
+
+    /**
+     * @param extension says the language of the program, such as "py"
+     */
+    public void newProgram(String extension) {
+        Program newProgram = library.newProgram(extension);
         setProgram(newProgram);
         fireProgramListChange();
     }
 
     public void copyProgram() {
-        Program newProgram = library.newProgram();
+        Program newProgram = library.newProgram(program.getExtension());
         library.rename(newProgram, program.getName());
         newProgram.writeContent(program.getContent());
         setProgram(newProgram);
@@ -87,6 +94,7 @@ public class Controller {
         Program oldProgram = this.program;
         this.program = program;
         library.setMostRecentProgram(program);
+        engine.prepare(program.getExtension(), program.getContent());
         this.pcs.firePropertyChange("program", oldProgram, program);
         setProgramName(program.getName());
     }
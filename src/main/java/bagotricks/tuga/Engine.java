@@ -7,15 +7,75 @@ public interface Engine {
 
     void init();
 
+    /**
+     * Shuts down whatever was started for programs, such as the runtimes of
+     * their languages.
+     */
+    void dispose();
+
+    Pacer getPacer();
+
     void execute(String name, String script);
 
+    /**
+     * @param extension the file extension of the program, such as "rb", which
+     * says the language of the script
+     */
+    void execute(String name, String extension, String script);
+
+    /**
+     * Gets ready in the background to execute the script, such as by
+     * starting its language or compiling it, since it's likely to run next.
+     */
+    void prepare(String extension, String script);
+
+    /**
+     * Runs the last successful program again without its script, e.g. at a
+     * different speed.
+     *
+     * @return false if there is nothing to replay
+     */
+    boolean replay();
+
     void paintCanvas(Component component, Graphics graphics);
 
+    /**
+     * Moves the view of the canvas by a distance in pixels.
+     */
+    void panView(int dx, int dy);
+
+    /**
+     * Zooms the view of the canvas around the given pixel.
+     */
+    void zoomView(double factor, int x, int y);
+
+    /**
+     * Zooms the view to fit everything drawn so far.
+     */
+    void fitView();
+
+    /**
+     * @return the number of steps drawn by the last run, to seek within
+     */
+    int getStepCount();
+
+    /**
+     * Shows the drawing and turtles as they were after the given step, until
+     * the next reset. Seeking to the step count shows everything again.
+     */
+    void seek(int step);
+
     void reset();
 
     void setListener(RunListener listener);
 
     void stop();
 
+    /**
+     * Stops animating the current run and shows it as far as it got, then
+     * the rest as soon as it is done.
+     */
+    void skipToEnd();
+
     boolean togglePause();
 }
@@ -28,6 +28,13 @@ public class Library {
 
     static final Charset CHARSET = Charset.forName("UTF-8");
 
+    /**
+     * For programs saved before others than Ruby could be made.
+     */
+    public static final String DEFAULT_EXTENSION = "rb";
+
+    private static final String EXTENSION_SUFFIX = "_extension";
+
     private static final String GROUP_SUFFIX = "_group";
 
     private static final String MOST_RECENT_PROGRAM = "mostRecentProgram";
@@ -97,6 +104,13 @@ public class Library {
         update();
     }
 
+    /**
+     * @return where the library keeps its programs and settings
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
     public Map<String, String> getGroupPrograms(String group) {
         return programGroupToNameToId.get(group);
     }
@@ -108,9 +122,11 @@ public class Library {
     public Program getProgram(String id) {
         Program program = programIdToProgram.get(id);
         if (program == null) {
-            File file = new File(this.programsDirectory, id + ".rb");
+            String extension = properties.getProperty(id + EXTENSION_SUFFIX, DEFAULT_EXTENSION);
+            File file = new File(this.programsDirectory, id + "." + extension);
             program = new Program();
             program.setContent(readAll(file));
+            program.setExtension(extension);
             program.setId(id);
             program.setFile(file);
             program.setGroup(properties.getProperty(
@@ -154,17 +170,25 @@ public class Library {
     }
 
     public Program newProgram() {
+        return newProgram(DEFAULT_EXTENSION);
+    }
+
+    /**
+     * @param extension says the language of the program, such as "py"
+     */
+    public Program newProgram(String extension) {
         try {
             int programCount = Integer.parseInt(properties.getProperty(
                     PROGRAM_COUNT,
                     "0"));
             Program program = new Program();
             program.setContent("");
+            program.setExtension(extension);
             program.setGroup(ProgramGroup.MY_PROGRAMS);
             while (true) {
                 programCount++;
                 String id = PROGRAM_PREFIX + programCount;
-                File file = new File(programsDirectory, id + ".rb");
+                File file = new File(programsDirectory, id + "." + extension);
                 if (file.createNewFile()) {
                     program.setId(id);
                     program.setFile(file);
@@ -175,6 +199,9 @@ public class Library {
             properties.setProperty(PROGRAM_COUNT, String.valueOf(programCount));
             properties.setProperty(program.getId() + GROUP_SUFFIX, program.getGroup());
             properties.setProperty(program.getId() + NAME_SUFFIX, program.getName());
+            if (!extension.equals(DEFAULT_EXTENSION)) {
+                properties.setProperty(program.getId() + EXTENSION_SUFFIX, extension);
+            }
             storeAndUpdate();
             return program;
         } catch (Exception e) {
@@ -12,11 +12,15 @@ import java.awt.Point;
 import java.awt.SystemColor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
@@ -24,17 +28,28 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSlider;
 import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 import javax.swing.event.DocumentEvent;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentListener;
 
 public class MainUi implements RunListener, Runnable {
 
     private static final String GO_TEXT = "Go";
 
+    private static final String[] SPEED_NAMES = {"Slow", "Normal", "Fast", "Faster", "Instant"};
+
+    private static final Pacer.Mode[] SPEED_MODES = {Pacer.Mode.STEPS_PER_SECOND, Pacer.Mode.STEPS_PER_SECOND, Pacer.Mode.STEPS_PER_SECOND, Pacer.Mode.STEPS_PER_FRAME, Pacer.Mode.INSTANT};
+
+    private static final int[] SPEED_RATES = {10, 50, 500, 200, 1};
+
+    private static final int DEFAULT_SPEED = 1;
+
     private JComponent canvas;
 
     private boolean doReset;
@@ -43,6 +58,8 @@ public class MainUi implements RunListener, Runnable {
 
     private JButton goButton;
 
+    private RepaintScheduler repaintScheduler;
+
     public BufferedImage icon;
 
     private boolean ignoreUpdate;
@@ -53,6 +70,11 @@ public class MainUi implements RunListener, Runnable {
 
     private boolean running;
 
+    /**
+     * Seeks through the steps of the last run.
+     */
+    private JSlider stepSlider;
+
     private JTextArea textArea;
 
     public String title;
@@ -71,25 +93,96 @@ public class MainUi implements RunListener, Runnable {
             @Override
             protected void paintComponent(Graphics graphics) {
                 controller.getEngine().paintCanvas(this, graphics);
+                controller.getEngine().getPacer().framePainted();
+            }
+
+        };
+        MouseAdapter viewControls = new MouseAdapter() {
+
+            private Point dragStart;
+
+            @Override
+            public void mousePressed(MouseEvent event) {
+                dragStart = event.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent event) {
+                if (dragStart != null) {
+                    controller.getEngine().panView(event.getX() - dragStart.x, event.getY() - dragStart.y);
+                    dragStart = event.getPoint();
+                    canvas.repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent event) {
+                dragStart = null;
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent event) {
+                if (event.getClickCount() == 2) {
+                    controller.getEngine().fitView();
+                    canvas.repaint();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent event) {
+                controller.getEngine().zoomView(Math.pow(1.1, -event.getPreciseWheelRotation()), event.getX(), event.getY());
+                canvas.repaint();
             }
 
         };
+        canvas.addMouseListener(viewControls);
+        canvas.addMouseMotionListener(viewControls);
+        canvas.addMouseWheelListener(viewControls);
+        canvas.setToolTipText("Drag to pan, scroll to zoom, double-click to fit");
+        repaintScheduler = new RepaintScheduler(canvas, controller.getEngine().getPacer());
         canvas.setBackground(Color.WHITE);
         canvas.setBorder(BorderFactory.createLoweredBevelBorder());
         canvas.setMinimumSize(new Dimension(450, 450));
         canvas.setPreferredSize(new Dimension(450, 450));
-        return canvas;
+        stepSlider = new JSlider(0, 0, 0);
+        stepSlider.setEnabled(false);
+        stepSlider.setToolTipText("Drag to see the drawing at an earlier step");
+        stepSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent event) {
+                if (stepSlider.isEnabled()) {
+                    controller.getEngine().seek(stepSlider.getValue());
+                    canvas.repaint();
+                }
+            }
+        });
+        BorderLayout canvasAreaLayout = new BorderLayout();
+        canvasAreaLayout.setVgap(3);
+        JPanel canvasArea = new JPanel(canvasAreaLayout);
+        canvasArea.add(canvas, BorderLayout.CENTER);
+        canvasArea.add(stepSlider, BorderLayout.SOUTH);
+        return canvasArea;
     }
 
     private Component createDevArea() {
         BorderLayout devAreaLayout = new BorderLayout();
         devAreaLayout.setVgap(3);
         JPanel devArea = new JPanel(devAreaLayout);
-        JPanel toolBar = new JPanel(new GridLayout(1, 2, 3, 3));
+        JPanel toolBar = new JPanel(new GridLayout(1, 5, 3, 3));
+        final JComboBox<String> speedBox = new JComboBox<>(SPEED_NAMES);
+        speedBox.setSelectedIndex(DEFAULT_SPEED);
+        speedBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                setSpeed(speedBox.getSelectedIndex());
+            }
+        });
+        setSpeed(DEFAULT_SPEED);
+        toolBar.add(speedBox);
         toolBar.add(UI.createButton("Reset", new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent event) {
-                synchronized (this) {
+                synchronized (MainUi.this) {
                     if (running) {
                         doReset = true;
                         controller.getEngine().stop();
@@ -97,13 +190,31 @@ public class MainUi implements RunListener, Runnable {
                     }
                 }
                 controller.getEngine().reset();
+                updateStepSlider();
                 canvas.repaint();
             }
         }));
+        toolBar.add(UI.createButton("Replay", new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                synchronized (MainUi.this) {
+                    if (running) {
+                        return;
+                    }
+                }
+                runProgram(true);
+            }
+        }));
+        toolBar.add(UI.createButton("Skip", new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                controller.getEngine().skipToEnd();
+            }
+        }));
         toolBar.add(goButton = UI.createButton(GO_TEXT, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent event) {
-                runProgram();
+                runProgram(false);
             }
         }));
         devArea.add(toolBar, BorderLayout.NORTH);
@@ -206,17 +317,7 @@ public class MainUi implements RunListener, Runnable {
 
     @Override
     public void onStep() {
-        try {
-            SwingUtilities.invokeAndWait(new Runnable() {
-                @Override
-                public void run() {
-                    canvas.repaint();
-                }
-            });
-            Thread.sleep(20);
-        } catch (Exception e) {
-            Thrower.throwAny(e);
-        }
+        repaintScheduler.markDirty();
     }
 
     @Override
@@ -258,7 +359,11 @@ public class MainUi implements RunListener, Runnable {
         frame.setVisible(true);
     }
 
-    private void runProgram() {
+    /**
+     * Runs the program, or with replay, draws the last successful run again
+     * without running its script.
+     */
+    private void runProgram(final boolean replay) {
         synchronized (this) {
             if (running) {
                 goButton.setText(controller.getEngine().togglePause() ? "Continue" : "Pause");
@@ -268,18 +373,24 @@ public class MainUi implements RunListener, Runnable {
             }
             running = true;
         }
+        stepSlider.setEnabled(false);
+        repaintScheduler.start();
         new Thread() {
             @Override
             public void run() {
                 Exception failure = null;
                 try {
-                    controller.getEngine().execute("Current Program", textArea.getText());
+                    if (replay) {
+                        controller.getEngine().replay();
+                    } else {
+                        controller.getEngine().execute("Current Program", controller.getProgram().getExtension(), textArea.getText());
+                    }
                 } catch (StopException e) {
                     // Requested by the user. Just ignore it.
                 } catch (Exception e) {
                     failure = e;
                 } finally {
-                    synchronized (this) {
+                    synchronized (MainUi.this) {
                         running = false;
                         if (doReset) {
                             controller.getEngine().reset();
@@ -290,7 +401,9 @@ public class MainUi implements RunListener, Runnable {
                     SwingUtilities.invokeLater(new Runnable() {
                         @Override
                         public void run() {
+                            repaintScheduler.stop();
                             goButton.setText(GO_TEXT);
+                            updateStepSlider();
                             canvas.repaint();
                             if (finalFailure != null) {
                                 JOptionPane.showMessageDialog(frame, finalFailure.getMessage(), "Program Error", JOptionPane.ERROR_MESSAGE);
@@ -302,6 +415,19 @@ public class MainUi implements RunListener, Runnable {
         }.start();
     }
 
+    private void updateStepSlider() {
+        int count = controller.getEngine().getStepCount();
+        // Disabled while changing it, so the change isn't taken as a seek.
+        stepSlider.setEnabled(false);
+        stepSlider.setMaximum(count);
+        stepSlider.setValue(count);
+        stepSlider.setEnabled(count > 0);
+    }
+
+    private void setSpeed(int speed) {
+        controller.getEngine().getPacer().setSpeed(SPEED_MODES[speed], SPEED_RATES[speed]);
+    }
+
     private void updateProgramContent() {
         ignoreUpdate = true;
         try {
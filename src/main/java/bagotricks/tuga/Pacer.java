@@ -0,0 +1,225 @@
+package bagotricks.tuga;
+
+/**
+ * Paces the playback of a running program. The engine's playback thread
+ * calls {@link #step()} after each step it shows, and the pacer holds it back
+ * as much as the current speed calls for. The program itself isn't paced
+ * here; it only waits once it gets too far ahead of the playback. The speed
+ * can be changed at any time, including while a program is running.
+ *
+ * Instead of sleeping a fixed time per step, the pacer watches the frames
+ * requested by the UI and when they get painted. If the event dispatch thread
+ * falls behind, stepping waits for it rather than piling up more work.
+ */
+public class Pacer {
+
+    public enum Mode {
+
+        /**
+         * Runs the given number of steps per second.
+         */
+        STEPS_PER_SECOND,
+        /**
+         * Runs the given number of steps and then waits for them to be
+         * painted.
+         */
+        STEPS_PER_FRAME,
+        /**
+         * Runs at full speed. Only the final result needs to be shown.
+         */
+        INSTANT
+
+    }
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final long MIN_FRAME_WAIT_NANOS = NANOS_PER_SECOND / 60;
+
+    /**
+     * Upper bound on waiting for a frame in case nothing is painting.
+     */
+    private static final long MAX_FRAME_WAIT_NANOS = NANOS_PER_SECOND / 4;
+
+    /**
+     * Once stepping falls this far behind schedule, start over rather than
+     * trying to catch up in a burst.
+     */
+    private static final long MAX_LAG_NANOS = NANOS_PER_SECOND / 10;
+
+    private volatile Mode mode;
+
+    private volatile int rate;
+
+    /**
+     * Bumped whenever waiting steps should stop waiting and look again.
+     */
+    private long generation;
+
+    private long clockStart;
+
+    private long clockSteps;
+
+    private int frameSteps;
+
+    private long requestedFrames;
+
+    private long servedFrames;
+
+    private long paintCount;
+
+    private long requestTime;
+
+    private long latency;
+
+    public Pacer() {
+        mode = Mode.INSTANT;
+        rate = 1;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public boolean isInstant() {
+        return mode == Mode.INSTANT;
+    }
+
+    /**
+     * Average time from a frame being requested to it being painted, in
+     * nanoseconds.
+     */
+    public synchronized long getPaintLatency() {
+        return latency;
+    }
+
+    public synchronized void setSpeed(Mode mode, int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        this.mode = mode;
+        this.rate = rate;
+        restartClock();
+        release();
+    }
+
+    /**
+     * Called when a program starts running.
+     */
+    public synchronized void start() {
+        restartClock();
+    }
+
+    /**
+     * Wakes up a waiting step, for example because the program is being
+     * stopped.
+     */
+    public synchronized void release() {
+        generation++;
+        notifyAll();
+    }
+
+    /**
+     * Called by the playback thread after each step it shows, for all the
+     * turtles at once.
+     */
+    public void step() throws InterruptedException {
+        if (mode == Mode.INSTANT) {
+            // Nothing to wait for, so don't bother with the lock.
+            return;
+        }
+        pace();
+    }
+
+    private synchronized void pace() throws InterruptedException {
+        switch (mode) {
+            case STEPS_PER_SECOND:
+                paceSteps();
+                break;
+            case STEPS_PER_FRAME:
+                paceFrames();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Called by the UI when it asks for a new frame.
+     */
+    public synchronized void frameRequested() {
+        requestedFrames++;
+        if (requestTime == 0) {
+            requestTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Called by the UI after painting. One paint serves all frames requested
+     * so far.
+     */
+    public synchronized void framePainted() {
+        if (requestTime != 0) {
+            long sample = System.nanoTime() - requestTime;
+            latency = latency == 0 ? sample : (7 * latency + sample) / 8;
+            requestTime = 0;
+        }
+        servedFrames = requestedFrames;
+        paintCount++;
+        notifyAll();
+    }
+
+    private void paceSteps() throws InterruptedException {
+        if (requestedFrames - servedFrames > 1) {
+            // The UI is behind. Let it catch up before going on.
+            awaitFrame();
+            restartClock();
+        }
+        long startGeneration = generation;
+        clockSteps++;
+        long deadline = clockStart + clockSteps * NANOS_PER_SECOND / rate;
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            waitNanos(deadline - now);
+            if (generation != startGeneration) {
+                return;
+            }
+        }
+        if (now - deadline > MAX_LAG_NANOS) {
+            restartClock();
+        }
+    }
+
+    private void paceFrames() throws InterruptedException {
+        frameSteps++;
+        if (frameSteps >= rate) {
+            frameSteps = 0;
+            awaitFrame();
+        }
+    }
+
+    private void awaitFrame() throws InterruptedException {
+        long startGeneration = generation;
+        long startPaintCount = paintCount;
+        long wait = Math.max(MIN_FRAME_WAIT_NANOS, Math.min(MAX_FRAME_WAIT_NANOS, 4 * latency));
+        long deadline = System.nanoTime() + wait;
+        long now;
+        while (paintCount == startPaintCount && generation == startGeneration && (now = System.nanoTime()) < deadline) {
+            waitNanos(deadline - now);
+        }
+    }
+
+    private void restartClock() {
+        clockStart = System.nanoTime();
+        clockSteps = 0;
+        frameSteps = 0;
+    }
+
+    private void waitNanos(long nanos) throws InterruptedException {
+        wait(nanos / 1000000, (int) (nanos % 1000000));
+    }
+
+}
@@ -9,6 +9,11 @@ public class Program {
 
     private String content;
 
+    /**
+     * Of the file, such as "rb", which says the language of the program.
+     */
+    private String extension = Library.DEFAULT_EXTENSION;
+
     private File file;
 
     private String group;
@@ -48,6 +53,14 @@ public class Program {
         }
     }
 
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
     public void setFile(File file) {
         this.file = file;
     }
@@ -104,7 +104,7 @@ public class ProgramsUi {
 
     private void createMyProgramsTab() {
         myProgramsTab = addProgramsTab("My Programs", ProgramGroup.MY_PROGRAMS);
-        JPanel buttonBar = new JPanel(new GridLayout(1, 4, 3, 3));
+        JPanel buttonBar = new JPanel(new GridLayout(1, 7, 3, 3));
         addButton(myProgramsTab, buttonBar, UI.createButton("Rename", new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent event) {
@@ -128,6 +128,24 @@ public class ProgramsUi {
                 controller.newProgram();
             }
         }));
+        addButton(myProgramsTab, buttonBar, UI.createButton("New Python", new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                controller.newProgram("py");
+            }
+        }));
+        addButton(myProgramsTab, buttonBar, UI.createButton("New Logo", new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                controller.newProgram("logo");
+            }
+        }));
+        addButton(myProgramsTab, buttonBar, UI.createButton("New Java", new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                controller.newProgram("java");
+            }
+        }));
         addButton(myProgramsTab, buttonBar, UI.createButton("Copy", new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent event) {
@@ -0,0 +1,68 @@
+package bagotricks.tuga;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.Timer;
+
+/**
+ * Coalesces repaint requests into at most one repaint per frame. Any thread
+ * can mark the component dirty without waiting on the event dispatch thread,
+ * and a Swing timer repaints at a fixed rate only when something changed.
+ * Requested frames are reported to the {@link Pacer}, which expects the
+ * component to report back when it has painted.
+ */
+public class RepaintScheduler implements ActionListener {
+
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    private final Component component;
+
+    private final Pacer pacer;
+
+    private final AtomicBoolean dirty;
+
+    private final Timer timer;
+
+    public RepaintScheduler(Component component, Pacer pacer) {
+        this(component, pacer, DEFAULT_FRAME_RATE);
+    }
+
+    public RepaintScheduler(Component component, Pacer pacer, int frameRate) {
+        this.component = component;
+        this.pacer = pacer;
+        dirty = new AtomicBoolean();
+        timer = new Timer(1000 / frameRate, this);
+        timer.setCoalesce(true);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        if (pacer.isInstant()) {
+            // Only the final result gets shown.
+            return;
+        }
+        if (dirty.getAndSet(false)) {
+            pacer.frameRequested();
+            component.repaint();
+        }
+    }
+
+    /**
+     * Notes that there is something new to paint. Cheap enough to call for
+     * every step.
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+}
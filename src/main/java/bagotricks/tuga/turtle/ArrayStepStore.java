@@ -0,0 +1,101 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+
+/**
+ * Heap backed step store using growable primitive arrays.
+ */
+public class ArrayStepStore extends StepStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The arrays are replaced together when growing, so a reader always gets
+     * a set of the same capacity.
+     */
+    private static class Columns {
+
+        final double[] xs;
+
+        final double[] ys;
+
+        final long[] penBits;
+
+        final int[] colorIndexes;
+
+        Columns(int capacity) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            penBits = new long[capacity >> 6];
+            colorIndexes = new int[capacity];
+        }
+
+        Columns(Columns old, int capacity) {
+            xs = Arrays.copyOf(old.xs, capacity);
+            ys = Arrays.copyOf(old.ys, capacity);
+            penBits = Arrays.copyOf(old.penBits, capacity >> 6);
+            colorIndexes = Arrays.copyOf(old.colorIndexes, capacity);
+        }
+
+    }
+
+    private volatile Columns columns;
+
+    public ArrayStepStore() {
+        columns = new Columns(INITIAL_CAPACITY);
+    }
+
+    @Override
+    protected void append(int index, double x, double y, boolean penDown, int colorIndex) {
+        Columns columns = this.columns;
+        if (index == columns.xs.length) {
+            columns = grow(columns);
+        }
+        columns.xs[index] = x;
+        columns.ys[index] = y;
+        if (penDown) {
+            columns.penBits[index >> 6] |= 1L << index;
+        }
+        columns.colorIndexes[index] = colorIndex;
+    }
+
+    @Override
+    protected void setPoint(int index, double x, double y) {
+        Columns columns = this.columns;
+        columns.xs[index] = x;
+        columns.ys[index] = y;
+    }
+
+    @Override
+    protected double columnX(int index) {
+        return columns.xs[index];
+    }
+
+    @Override
+    protected double columnY(int index) {
+        return columns.ys[index];
+    }
+
+    @Override
+    public boolean penDown(int index) {
+        checkIndex(index);
+        return (columns.penBits[index >> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public int colorIndex(int index) {
+        checkIndex(index);
+        return columns.colorIndexes[index];
+    }
+
+    private Columns grow(Columns old) {
+        int capacity = old.xs.length << 1;
+        if (capacity < 0) {
+            throw new OutOfMemoryError("Too many steps");
+        }
+        Columns columns = new Columns(old, capacity);
+        this.columns = columns;
+        return columns;
+    }
+
+}
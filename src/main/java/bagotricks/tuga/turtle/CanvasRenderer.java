@@ -0,0 +1,228 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Paints a drawing on the canvas through a {@link Viewport}. The visible area
+ * is covered with raster tiles from a {@link TileCache}. New tiles are drawn
+ * from a {@link SegmentIndex} per path, so only the segments touching them get
+ * rasterized, and cached tiles just catch up on steps added since.
+ *
+ * Steps are read without locking while turtles keep drawing. Each paint brings
+ * the indexes up to a snapshot of every path and the tiles up to the indexes,
+ * so tiles never get ahead of what the index knows about.
+ */
+class CanvasRenderer {
+
+    /**
+     * Default memory budget for cached tiles.
+     */
+    static final long DEFAULT_TILE_BUDGET = 64L << 20;
+
+    /**
+     * When a tile is further behind than this, look up the segments in the
+     * index rather than walking all the new steps.
+     */
+    private static final int CATCH_UP_LIMIT = 4096;
+
+    private final Viewport viewport;
+
+    private final TileCache tiles;
+
+    private final List<SegmentIndex> indexes;
+
+    private final IntList segments;
+
+    private List<Path> indexedPaths;
+
+    private int width;
+
+    private int height;
+
+    CanvasRenderer(long tileBudget) {
+        viewport = new Viewport();
+        tiles = new TileCache(tileBudget);
+        indexes = new ArrayList<>();
+        segments = new IntList();
+    }
+
+    /**
+     * Paints the drawing, but not the background, into device space.
+     */
+    void paint(Graphics2D g, Drawing drawing, int width, int height) {
+        paint(g, drawing, width, height, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Paints at most the first limit steps of each path, e.g. while playing
+     * back a run that was computed ahead. The limit must not go down until
+     * the next clear.
+     */
+    void paint(Graphics2D g, Drawing drawing, int width, int height, int limit) {
+        update(drawing, width, height, limit);
+        double scale = viewport.scale(width, height);
+        int originX = viewport.originX(width, height);
+        int originY = viewport.originY(width, height);
+        int size = TileCache.TILE_SIZE;
+        int tileX0 = floorDiv(-originX, size);
+        int tileX1 = floorDiv(width - 1 - originX, size);
+        int tileY0 = floorDiv(-originY, size);
+        int tileY1 = floorDiv(height - 1 - originY, size);
+        for (int tileY = tileY0; tileY <= tileY1; tileY++) {
+            for (int tileX = tileX0; tileX <= tileX1; tileX++) {
+                TileCache.Tile tile = tiles.get(scale, tileX, tileY);
+                if (tile == null) {
+                    tile = tiles.create(scale, tileX, tileY);
+                }
+                updateTile(tile, scale, tileX, tileY);
+                g.drawImage(tile.image, originX + tileX * size, originY + tileY * size, null);
+            }
+        }
+    }
+
+    /**
+     * Catches up with the drawing and the canvas size without painting.
+     */
+    void update(Drawing drawing, int width, int height) {
+        update(drawing, width, height, Integer.MAX_VALUE);
+    }
+
+    void update(Drawing drawing, int width, int height, int limit) {
+        this.width = width;
+        this.height = height;
+        updateIndexes(drawing.paths, limit);
+    }
+
+    /**
+     * @return the world transform for the size last painted
+     */
+    AffineTransform getTransform() {
+        return viewport.transform(width, height);
+    }
+
+    void pan(int dx, int dy) {
+        viewport.pan(dx, dy, width, height);
+    }
+
+    void zoom(double factor, int x, int y) {
+        viewport.zoom(factor, x, y, width, height);
+    }
+
+    void fit() {
+        Rectangle2D bounds = null;
+        for (SegmentIndex index : indexes) {
+            Rectangle2D pathBounds = index.getBounds();
+            if (pathBounds != null) {
+                if (bounds == null) {
+                    bounds = pathBounds;
+                } else {
+                    bounds.add(pathBounds);
+                }
+            }
+        }
+        viewport.fit(bounds, width, height);
+    }
+
+    /**
+     * Forgets all tiles and indexes, e.g. when the drawing was reset.
+     */
+    void clear() {
+        tiles.clear();
+        indexes.clear();
+        indexedPaths = null;
+    }
+
+    private void updateIndexes(List<Path> paths, int limit) {
+        if (paths != indexedPaths) {
+            clear();
+            indexedPaths = paths;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            if (i == indexes.size()) {
+                indexes.add(new SegmentIndex());
+            }
+            indexes.get(i).update(paths.get(i), limit);
+        }
+    }
+
+    private void updateTile(TileCache.Tile tile, double scale, int tileX, int tileY) {
+        int pathCount = indexes.size();
+        if (tile.cursors.length < pathCount) {
+            StepCursor[] cursors = Arrays.copyOf(tile.cursors, pathCount);
+            for (int p = tile.cursors.length; p < pathCount; p++) {
+                cursors[p] = new StepCursor();
+            }
+            tile.cursors = cursors;
+        }
+        Graphics2D g = null;
+        try {
+            for (int p = 0; p < pathCount; p++) {
+                g = updateTile(tile, g, p, indexedPaths.get(p), scale, tileX, tileY);
+            }
+        } finally {
+            if (g != null) {
+                g.dispose();
+            }
+        }
+    }
+
+    /**
+     * Brings one path up to date in the tile, creating the graphics when first
+     * needed.
+     */
+    private Graphics2D updateTile(TileCache.Tile tile, Graphics2D g, int p, Path path, double scale, int tileX, int tileY) {
+        StepCursor cursor = tile.cursors[p];
+        StepCursor end = indexes.get(p).getCursor();
+        int drawn = cursor.count;
+        int count = end.count;
+        boolean extended = cursor.lastMoved(path.steps, end);
+        if (drawn == count && !extended) {
+            return g;
+        }
+        if (g == null) {
+            g = tile.image.createGraphics();
+            int size = TileCache.TILE_SIZE;
+            g.translate(-tileX * size, -tileY * size);
+            g.scale(scale, -scale);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+        if (extended) {
+            DrawingRenderer.paintExtension(g, path, cursor, end);
+        }
+        if (count - drawn <= CATCH_UP_LIMIT && drawn > 0) {
+            DrawingRenderer.paintSteps(g, path, drawn, end);
+        } else if (count > drawn) {
+            indexes.get(p).query(path, worldBounds(path, scale, tileX, tileY), segments);
+            segments.removeBelow(drawn);
+            DrawingRenderer.paintSegments(g, path, segments, end);
+        }
+        cursor.set(end);
+        return g;
+    }
+
+    private static Rectangle2D worldBounds(Path path, double scale, int tileX, int tileY) {
+        int size = TileCache.TILE_SIZE;
+        // Reach a bit further for the stroke and antialiasing.
+        double margin = 0.5 * path.width + 1 / scale;
+        double left = tileX * size / scale - margin;
+        double right = (tileX + 1) * size / scale + margin;
+        double bottom = -(tileY + 1) * size / scale - margin;
+        double top = -tileY * size / scale + margin;
+        return new Rectangle2D.Double(left, bottom, right - left, top - bottom);
+    }
+
+    private static int floorDiv(int x, int y) {
+        int quotient = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+}
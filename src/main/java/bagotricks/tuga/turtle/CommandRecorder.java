@@ -0,0 +1,257 @@
+package bagotricks.tuga.turtle;
+
+import bagotricks.tuga.Thrower;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes Tuga calls on to another Tuga while writing them to a compact binary
+ * log, which {@link CommandReplayer} can play back without the script.
+ *
+ * The log starts with {@link #MAGIC} and a version byte. Each command is then
+ * an opcode byte, the id of the turtle as a varint, with 0 for the first one,
+ * and the arguments. Distances and angles that fit in a float exactly, which
+ * is most of them, are written as floats with {@link #FLOAT} set in the
+ * opcode. Spawned turtles are recorded too, each getting the next id, and
+ * their commands are logged in the order they happened across threads.
+ */
+public class CommandRecorder implements Tuga {
+
+    static final int MAGIC = 0x5475676c;
+
+    /**
+     * Version 2 added {@link #TURN_WALK} and {@link #WALK_TO}.
+     */
+    static final int VERSION = 2;
+
+    static final int WALK = 1;
+
+    static final int JUMP = 2;
+
+    static final int TURN = 3;
+
+    static final int PEN_UP = 4;
+
+    static final int PEN_DOWN = 5;
+
+    static final int COLOR = 6;
+
+    /**
+     * Followed by the id of the new turtle.
+     */
+    static final int SPAWN = 7;
+
+    /**
+     * Followed by the number of values and the values.
+     */
+    static final int TURN_WALK = 8;
+
+    /**
+     * Followed by the number of values and the values.
+     */
+    static final int WALK_TO = 9;
+
+    static final int FLOAT = 0x80;
+
+    /**
+     * Shared by the recorders of all turtles in a run.
+     */
+    private static class Log {
+
+        final DataOutputStream out;
+
+        int turtleCount = 1;
+
+        Log(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+    }
+
+    private final Tuga target;
+
+    private final Log log;
+
+    private final int id;
+
+    public CommandRecorder(Tuga target, OutputStream out) {
+        this(target, new Log(out), 0);
+        try {
+            log.out.writeInt(MAGIC);
+            log.out.writeByte(VERSION);
+        } catch (IOException e) {
+            throw Thrower.throwAny(e);
+        }
+    }
+
+    private CommandRecorder(Tuga target, Log log, int id) {
+        this.target = target;
+        this.log = log;
+        this.id = id;
+    }
+
+    /**
+     * Records each command on its own, so the log is the same as without
+     * buffering.
+     */
+    @Override
+    public void apply(double[] commands) {
+        TugaCommands.apply(this, commands);
+    }
+
+    @Override
+    public float[] color(float[] val) {
+        if (val.length == 3) {
+            return color3(val[0], val[1], val[2]);
+        }
+        // Let the target complain.
+        return target.color(val);
+    }
+
+    @Override
+    public float[] color3(float red, float green, float blue) {
+        synchronized (log) {
+            try {
+                writeOp(COLOR);
+                log.out.writeFloat(red);
+                log.out.writeFloat(green);
+                log.out.writeFloat(blue);
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+        return target.color3(red, green, blue);
+    }
+
+    @Override
+    public void jump(double distance) {
+        write(JUMP, distance);
+        target.jump(distance);
+    }
+
+    @Override
+    public void pen(boolean down) {
+        synchronized (log) {
+            try {
+                writeOp(down ? PEN_DOWN : PEN_UP);
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+        target.pen(down);
+    }
+
+    @Override
+    public void spawn(final TurtleProgram program) {
+        final int childId;
+        synchronized (log) {
+            childId = log.turtleCount++;
+            try {
+                writeOp(SPAWN);
+                writeVarint(childId);
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+        target.spawn(new TurtleProgram() {
+            @Override
+            public void run(Tuga turtle) {
+                program.run(new CommandRecorder(turtle, log, childId));
+            }
+        });
+    }
+
+    @Override
+    public void turn(double angle) {
+        write(TURN, angle);
+        target.turn(angle);
+    }
+
+    @Override
+    public void turnWalk(double[] pairs) {
+        write(TURN_WALK, pairs);
+        target.turnWalk(pairs);
+    }
+
+    @Override
+    public void walk(double distance) {
+        write(WALK, distance);
+        target.walk(distance);
+    }
+
+    @Override
+    public void walkTo(double[] points) {
+        write(WALK_TO, points);
+        target.walkTo(points);
+    }
+
+    public void flush() {
+        synchronized (log) {
+            try {
+                log.out.flush();
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+    }
+
+    private void write(int op, double value) {
+        synchronized (log) {
+            try {
+                float single = (float) value;
+                if (single == value) {
+                    writeOp(op | FLOAT);
+                    log.out.writeFloat(single);
+                } else {
+                    writeOp(op);
+                    log.out.writeDouble(value);
+                }
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+    }
+
+    /**
+     * Writes all values as floats if they all fit.
+     */
+    private void write(int op, double[] values) {
+        boolean floats = true;
+        for (double value : values) {
+            if ((float) value != value) {
+                floats = false;
+                break;
+            }
+        }
+        synchronized (log) {
+            try {
+                writeOp(floats ? op | FLOAT : op);
+                writeVarint(values.length);
+                for (double value : values) {
+                    if (floats) {
+                        log.out.writeFloat((float) value);
+                    } else {
+                        log.out.writeDouble(value);
+                    }
+                }
+            } catch (IOException e) {
+                throw Thrower.throwAny(e);
+            }
+        }
+    }
+
+    private void writeOp(int op) throws IOException {
+        log.out.writeByte(op);
+        writeVarint(id);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            log.out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        log.out.writeByte(value);
+    }
+
+}
@@ -0,0 +1,135 @@
+package bagotricks.tuga.turtle;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * Plays a log written by {@link CommandRecorder} back into a Tuga, e.g. the
+ * engine, without running the script again.
+ *
+ * Everything is replayed on the calling thread in the order it was logged,
+ * including the commands of spawned turtles. Those still get spawned through
+ * the target, but their programs just hand their turtle back to the replayer
+ * and finish.
+ */
+public class CommandReplayer {
+
+    private final DataInputStream in;
+
+    private final List<Tuga> turtles;
+
+    public CommandReplayer(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        turtles = new ArrayList<Tuga>();
+    }
+
+    public void replay(Tuga target) throws IOException {
+        if (in.readInt() != CommandRecorder.MAGIC) {
+            throw new IOException("Not a command log");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > CommandRecorder.VERSION) {
+            throw new IOException("Unsupported command log version: " + version);
+        }
+        turtles.clear();
+        turtles.add(target);
+        int op;
+        while ((op = in.read()) >= 0) {
+            Tuga turtle = turtle(readVarint());
+            switch (op & ~CommandRecorder.FLOAT) {
+                case CommandRecorder.WALK:
+                    turtle.walk(readValue(op));
+                    break;
+                case CommandRecorder.JUMP:
+                    turtle.jump(readValue(op));
+                    break;
+                case CommandRecorder.TURN:
+                    turtle.turn(readValue(op));
+                    break;
+                case CommandRecorder.PEN_UP:
+                    turtle.pen(false);
+                    break;
+                case CommandRecorder.PEN_DOWN:
+                    turtle.pen(true);
+                    break;
+                case CommandRecorder.COLOR:
+                    turtle.color3(in.readFloat(), in.readFloat(), in.readFloat());
+                    break;
+                case CommandRecorder.SPAWN:
+                    spawn(turtle, readVarint());
+                    break;
+                case CommandRecorder.TURN_WALK:
+                    turtle.turnWalk(readValues(op));
+                    break;
+                case CommandRecorder.WALK_TO:
+                    turtle.walkTo(readValues(op));
+                    break;
+                default:
+                    throw new IOException("Bad opcode: " + op);
+            }
+        }
+    }
+
+    private void spawn(Tuga parent, int id) throws IOException {
+        if (id != turtles.size()) {
+            throw new IOException("Spawned turtle " + id + " out of order");
+        }
+        final SynchronousQueue<Tuga> handOff = new SynchronousQueue<Tuga>();
+        parent.spawn(new TurtleProgram() {
+            @Override
+            public void run(Tuga turtle) {
+                try {
+                    handOff.put(turtle);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            turtles.add(handOff.take());
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted waiting for spawned turtle", e);
+        }
+    }
+
+    private Tuga turtle(int id) throws IOException {
+        if (id >= turtles.size()) {
+            throw new IOException("Unknown turtle: " + id);
+        }
+        return turtles.get(id);
+    }
+
+    private double readValue(int op) throws IOException {
+        return (op & CommandRecorder.FLOAT) != 0 ? in.readFloat() : in.readDouble();
+    }
+
+    private double[] readValues(int op) throws IOException {
+        double[] values = new double[readVarint()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(op);
+        }
+        return values;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+}
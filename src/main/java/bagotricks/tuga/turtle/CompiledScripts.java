@@ -0,0 +1,50 @@
+package bagotricks.tuga.turtle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scripts of one language prepared or run lately, kept by the hash of
+ * their text for as long as the language is started. Each run gets a new
+ * runner, so every runner compiles these before it's handed out, and running
+ * the same program again skips parsing and compiling. The least recently
+ * used go first once there are too many.
+ */
+class CompiledScripts {
+
+    static final int DEFAULT_LIMIT = 16;
+
+    private final String language;
+
+    private final Map<String, String> scripts;
+
+    CompiledScripts(String language, final int limit) {
+        this.language = language;
+        scripts = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /**
+     * Keeps the script for runners to compile, or marks it as used again.
+     */
+    synchronized void add(String script) {
+        scripts.put(ResultCache.key(language, script), script);
+    }
+
+    /**
+     * @return the scripts, most recently used first
+     */
+    synchronized List<String> recent() {
+        List<String> recent = new ArrayList<String>(scripts.values());
+        Collections.reverse(recent);
+        return recent;
+    }
+
+}
@@ -1,11 +1,31 @@
 package bagotricks.tuga.turtle;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Drawing {
 
-	public List<Path> paths;
+	/**
+	 * One path per turtle. Turtles can be added while painting, so this is
+	 * safe to iterate from any thread. A reset replaces the whole list, so
+	 * readers should read the field once per pass.
+	 */
+	public volatile List<Path> paths;
+
+	/**
+	 * When set, steps are logged to memory mapped files in this directory
+	 * rather than kept on the heap. Takes effect on the next reset. See
+	 * {@link MappedStepStore#createDirectory(File)}.
+	 */
+	public File stepLogDirectory;
+
+	/**
+	 * Whether new paths merge steps that continue the last segment. Off for
+	 * runs, since they're played back and scrubbed a step at a time, and
+	 * merged steps would show several moves as one.
+	 */
+	public boolean compactSteps;
 
 	public Drawing() {
 		reset();
@@ -15,9 +35,37 @@ public class Drawing {
 		return paths.get(paths.size() - 1);
 	}
 
+	public Path newPath() {
+		return newPath(0, 0);
+	}
+
+	/**
+	 * Creates a path starting at the given point, but doesn't add it.
+	 */
+	public Path newPath(double x, double y) {
+		Path path = new Path(stepLogDirectory != null ? MappedStepStore.create(stepLogDirectory) : new ArrayStepStore(), x, y);
+		path.steps.setCompacting(compactSteps);
+		return path;
+	}
+
 	public void reset() {
-		paths = new ArrayList<Path>();
-		paths.add(new Path());
+		List<Path> paths = new CopyOnWriteArrayList<Path>();
+		paths.add(newPath());
+		setPaths(paths);
+	}
+
+	/**
+	 * Replaces all paths, closing the old ones. The new list must be safe to
+	 * iterate while turtles add to it and must not be empty.
+	 */
+	public void setPaths(List<Path> paths) {
+		List<Path> old = this.paths;
+		this.paths = paths;
+		if (old != null) {
+			for (Path path : old) {
+				path.steps.close();
+			}
+		}
 	}
 
 }
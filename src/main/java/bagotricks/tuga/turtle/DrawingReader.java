@@ -0,0 +1,345 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Loads drawings saved by {@link DrawingWriter}. A whole drawing streams
+ * straight into new step stores with {@link #read(Drawing, InputStream)}.
+ * Opening a file instead reads its index, so single chunks of steps can be
+ * loaded without going through the rest.
+ */
+public class DrawingReader implements Closeable {
+
+    private static class Header {
+
+        double width;
+
+        Color color;
+
+        Color[] palette;
+
+        int stepCount;
+
+    }
+
+    public static void read(Drawing drawing, File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            read(drawing, in);
+        }
+    }
+
+    /**
+     * Replaces the paths of the drawing with the ones read. New stores are
+     * made as the drawing would for turtles. Doesn't close the stream.
+     */
+    public static void read(Drawing drawing, InputStream in) throws IOException {
+        DrawingReader reader = new DrawingReader(new DataInputStream(new BufferedInputStream(in)), null);
+        reader.readHead();
+        List<Path> paths = new ArrayList<Path>();
+        try {
+            int record;
+            while ((record = reader.in.readUnsignedByte()) != DrawingWriter.INDEX) {
+                if (record != DrawingWriter.PATH) {
+                    throw new IOException("Bad record: " + record);
+                }
+                paths.add(reader.readPath(drawing));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Path path : paths) {
+                path.steps.close();
+            }
+            throw e;
+        }
+        if (paths.isEmpty()) {
+            paths.add(drawing.newPath());
+        }
+        drawing.setPaths(new CopyOnWriteArrayList<Path>(paths));
+    }
+
+    private final DataInput in;
+
+    /**
+     * Null when streaming.
+     */
+    private final RandomAccessFile file;
+
+    private long[] pathOffsets;
+
+    private long[][] chunkOffsets;
+
+    private Header[] headers;
+
+    private byte[] buffer;
+
+    /**
+     * Where decoding is in the buffer.
+     */
+    private int position;
+
+    private int limit;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    private final int[] flags;
+
+    /**
+     * Opens a saved drawing for random access.
+     */
+    public DrawingReader(File file) throws IOException {
+        this(null, new RandomAccessFile(file, "r"));
+        try {
+            readHead();
+            readIndex();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private DrawingReader(DataInput in, RandomAccessFile file) {
+        this.in = in != null ? in : file;
+        this.file = file;
+        buffer = new byte[1 << 16];
+        xs = new double[DrawingWriter.CHUNK_STEPS];
+        ys = new double[DrawingWriter.CHUNK_STEPS];
+        flags = new int[DrawingWriter.CHUNK_STEPS];
+    }
+
+    public int getPathCount() {
+        return pathOffsets.length;
+    }
+
+    public int getChunkCount(int path) {
+        return chunkOffsets[path].length;
+    }
+
+    /**
+     * @return the index of the chunk holding the given step of a path
+     */
+    public static int getChunk(int step) {
+        return step / DrawingWriter.CHUNK_STEPS;
+    }
+
+    public int getStepCount(int path) throws IOException {
+        return header(path).stepCount;
+    }
+
+    /**
+     * Adds the steps of one chunk of a path to the end of the given store.
+     */
+    public void readChunk(int path, int chunk, StepStore steps) throws IOException {
+        Header header = header(path);
+        file.seek(chunkOffsets[path][chunk]);
+        if (in.readUnsignedByte() != DrawingWriter.CHUNK) {
+            throw new IOException("No chunk at " + chunkOffsets[path][chunk]);
+        }
+        int count = readChunk();
+        for (int i = 0; i < count; i++) {
+            steps.add(xs[i], ys[i], (flags[i] & 1) != 0, color(header, flags[i] >>> 1));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private Header header(int path) throws IOException {
+        if (headers[path] == null) {
+            file.seek(pathOffsets[path]);
+            if (in.readUnsignedByte() != DrawingWriter.PATH) {
+                throw new IOException("No path at " + pathOffsets[path]);
+            }
+            headers[path] = readHeader();
+        }
+        return headers[path];
+    }
+
+    private void readHead() throws IOException {
+        if (in.readInt() != DrawingWriter.MAGIC) {
+            throw new IOException("Not a saved drawing");
+        }
+        int version = in.readUnsignedByte();
+        if (version != DrawingWriter.VERSION) {
+            throw new IOException("Unsupported drawing version: " + version);
+        }
+    }
+
+    private void readIndex() throws IOException {
+        file.seek(file.length() - 12);
+        long indexOffset = file.readLong();
+        if (file.readInt() != DrawingWriter.MAGIC) {
+            throw new IOException("Missing index");
+        }
+        file.seek(indexOffset);
+        if (in.readUnsignedByte() != DrawingWriter.INDEX) {
+            throw new IOException("No index at " + indexOffset);
+        }
+        int pathCount = readVarint();
+        pathOffsets = new long[pathCount];
+        chunkOffsets = new long[pathCount][];
+        headers = new Header[pathCount];
+        for (int p = 0; p < pathCount; p++) {
+            pathOffsets[p] = readVarlong();
+            long[] offsets = new long[readVarint()];
+            for (int c = 0; c < offsets.length; c++) {
+                offsets[c] = readVarlong();
+            }
+            chunkOffsets[p] = offsets;
+        }
+    }
+
+    private Header readHeader() throws IOException {
+        Header header = new Header();
+        header.width = in.readDouble();
+        header.color = new Color(in.readInt(), true);
+        header.palette = new Color[readVarint()];
+        for (int c = 0; c < header.palette.length; c++) {
+            header.palette[c] = in.readBoolean() ? new Color(in.readInt(), true) : null;
+        }
+        header.stepCount = readVarint();
+        return header;
+    }
+
+    private Path readPath(Drawing drawing) throws IOException {
+        Header header = readHeader();
+        Path path = null;
+        try {
+            int remaining = header.stepCount;
+            while (remaining > 0) {
+                if (in.readUnsignedByte() != DrawingWriter.CHUNK) {
+                    throw new IOException("Missing chunk");
+                }
+                int count = readChunk();
+                int start = 0;
+                if (path == null) {
+                    // A new path already has its first step.
+                    path = drawing.newPath(xs[0], ys[0]);
+                    path.steps.setCompacting(false);
+                    start = 1;
+                }
+                for (int i = start; i < count; i++) {
+                    path.steps.add(xs[i], ys[i], (flags[i] & 1) != 0, color(header, flags[i] >>> 1));
+                }
+                remaining -= count;
+            }
+            if (path == null) {
+                path = drawing.newPath();
+            }
+            // Saved steps were already merged as far as they go.
+            path.steps.setCompacting(drawing.compactSteps);
+        } catch (IOException | RuntimeException e) {
+            if (path != null) {
+                path.steps.close();
+            }
+            throw e;
+        }
+        path.width = header.width;
+        path.color = header.color;
+        return path;
+    }
+
+    /**
+     * Decodes a chunk, after its record byte, into xs, ys and flags.
+     *
+     * @return the number of steps
+     */
+    private int readChunk() throws IOException {
+        int count = readVarint();
+        int length = readVarint();
+        if (count <= 0 || count > DrawingWriter.CHUNK_STEPS) {
+            throw new IOException("Bad chunk size: " + count);
+        }
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length << 1)];
+        }
+        in.readFully(buffer, 0, length);
+        position = 0;
+        limit = length;
+        long x = 0;
+        long y = 0;
+        for (int i = 0; i < count; i++) {
+            x += unzigzag(bufferVarlong());
+            y += unzigzag(bufferVarlong());
+            xs[i] = x / DrawingWriter.SCALE;
+            ys[i] = y / DrawingWriter.SCALE;
+        }
+        for (int i = 0; i < count;) {
+            long runLength = bufferVarlong();
+            long value = bufferVarlong();
+            if (runLength <= 0 || runLength > count - i || value > Integer.MAX_VALUE) {
+                throw new IOException("Bad run: " + runLength + " of " + value);
+            }
+            for (int end = i + (int) runLength; i < end; i++) {
+                flags[i] = (int) value;
+            }
+        }
+        if (position != limit) {
+            throw new IOException("Bad chunk length: " + length);
+        }
+        return count;
+    }
+
+    private long bufferVarlong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position == limit) {
+                throw new IOException("Truncated chunk");
+            }
+            byte b = buffer[position++];
+            value |= (b & 0x7fL) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private Color color(Header header, int index) throws IOException {
+        if (index >= header.palette.length) {
+            throw new IOException("Bad color index: " + index);
+        }
+        return header.palette[index];
+    }
+
+    private int readVarint() throws IOException {
+        long value = readVarlong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Varint too big: " + value);
+        }
+        return (int) value;
+    }
+
+    private long readVarlong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+}
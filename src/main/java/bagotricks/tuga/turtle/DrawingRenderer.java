@@ -0,0 +1,181 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.imageio.ImageIO;
+
+/**
+ * Rasterizes a {@link Drawing} with Java2D. Only uses a {@link BufferedImage},
+ * so it works without a display, e.g. with java.awt.headless=true.
+ */
+public class DrawingRenderer {
+
+    /**
+     * Width and height of the square of world coordinates that is fit into
+     * the smaller side of the target.
+     */
+    static final double WORLD_SIZE = 1850;
+
+    /**
+     * Limits how long a polyline grows before it is drawn, to bound the
+     * memory used for huge runs.
+     */
+    private static final int MAX_BATCH_POINTS = 4096;
+
+    private static final ConcurrentMap<Double, BasicStroke> STROKES = new ConcurrentHashMap<>();
+
+    public static BufferedImage render(Drawing drawing, int width, int height) {
+        return render(drawing, width, height, Color.WHITE);
+    }
+
+    public static BufferedImage render(Drawing drawing, int width, int height, Color background) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            if (background != null) {
+                g.setColor(background);
+                g.fillRect(0, 0, width, height);
+            }
+            initGraphics(g, width, height);
+            StepCursor end = new StepCursor();
+            for (Path path : drawing.paths) {
+                end.read(path.steps);
+                paintSteps(g, path, 0, end);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    public static void writePng(Drawing drawing, int width, int height, File file) throws IOException {
+        if (!ImageIO.write(render(drawing, width, height), "png", file)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    /**
+     * Sets up the world transform: origin in the center, y up and the world
+     * square scaled to the smaller side.
+     */
+    static void initGraphics(Graphics2D g, int width, int height) {
+        g.translate(0.5 * width, 0.5 * height);
+        double base = Math.min(width, height);
+        g.scale(base / WORLD_SIZE, base / -WORLD_SIZE);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    /**
+     * Draws the segments ending at steps from index start on up to the given
+     * snapshot, so a caller can draw incrementally. Consecutive pen down steps
+     * of the same color are batched into one polyline per draw call.
+     */
+    static void paintSteps(Graphics2D g, Path path, int start, StepCursor end) {
+        StepStore steps = path.steps;
+        g.setStroke(stroke(path.width));
+        Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, MAX_BATCH_POINTS);
+        double[] point = new double[2];
+        int points = 0;
+        int lineColor = -1;
+        for (int i = Math.max(start, 1); i < end.count; i++) {
+            if (!steps.penDown(i)) {
+                points = flush(g, steps, line, points, lineColor);
+                continue;
+            }
+            int color = steps.colorIndex(i);
+            if (color != lineColor || points >= MAX_BATCH_POINTS) {
+                points = flush(g, steps, line, points, lineColor);
+            }
+            if (points == 0) {
+                end.point(steps, i - 1, point);
+                line.moveTo(point[0], point[1]);
+                lineColor = color;
+                points++;
+            }
+            end.point(steps, i, point);
+            line.lineTo(point[0], point[1]);
+            points++;
+        }
+        flush(g, steps, line, points, lineColor);
+    }
+
+    /**
+     * Draws the listed segments of a path, which must be sorted and within
+     * the snapshot. Runs of consecutive segments are batched like in
+     * paintSteps.
+     */
+    static void paintSegments(Graphics2D g, Path path, IntList segments, StepCursor end) {
+        StepStore steps = path.steps;
+        g.setStroke(stroke(path.width));
+        Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, MAX_BATCH_POINTS);
+        double[] point = new double[2];
+        int points = 0;
+        int lineColor = -1;
+        int last = -1;
+        for (int s = 0; s < segments.size(); s++) {
+            int i = segments.get(s);
+            int color = steps.colorIndex(i);
+            if (i != last + 1 || color != lineColor || points >= MAX_BATCH_POINTS) {
+                points = flush(g, steps, line, points, lineColor);
+            }
+            if (points == 0) {
+                end.point(steps, i - 1, point);
+                line.moveTo(point[0], point[1]);
+                lineColor = color;
+                points++;
+            }
+            end.point(steps, i, point);
+            line.lineTo(point[0], point[1]);
+            points++;
+            last = i;
+        }
+        flush(g, steps, line, points, lineColor);
+    }
+
+    /**
+     * Draws how far the last step read by the cursor has been extended by the
+     * time of the newer snapshot, if at all.
+     */
+    static void paintExtension(Graphics2D g, Path path, StepCursor cursor, StepCursor end) {
+        StepStore steps = path.steps;
+        int last = cursor.count - 1;
+        if (cursor.lastMoved(steps, end) && steps.penDown(last)) {
+            double[] point = new double[2];
+            end.point(steps, last, point);
+            g.setStroke(stroke(path.width));
+            g.setColor(steps.color(last));
+            Path2D.Double line = new Path2D.Double();
+            line.moveTo(cursor.lastX, cursor.lastY);
+            line.lineTo(point[0], point[1]);
+            g.draw(line);
+        }
+    }
+
+    static BasicStroke stroke(double width) {
+        Double key = width;
+        BasicStroke stroke = STROKES.get(key);
+        if (stroke == null) {
+            stroke = new BasicStroke((float) width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            STROKES.putIfAbsent(key, stroke);
+        }
+        return stroke;
+    }
+
+    private static int flush(Graphics2D g, StepStore steps, Path2D.Double line, int points, int color) {
+        if (points > 0) {
+            g.setColor(steps.paletteColor(color));
+            g.draw(line);
+            line.reset();
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,189 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Saves drawings in a compact binary format that {@link DrawingReader} loads
+ * back into step stores.
+ *
+ * The file starts with {@link #MAGIC} and a version byte. Each path follows
+ * as a {@link #PATH} record with its width, color, palette and step count,
+ * then its steps in {@link #CHUNK} records of up to {@link #CHUNK_STEPS}
+ * steps each. A chunk holds the byte length of its body, so readers can skip
+ * it, and stands on its own: its first position is absolute and the rest are
+ * varint deltas from the one before, in units of 1 / {@link #SCALE}. The pen
+ * and color of the steps come after as runs. Last is an {@link #INDEX} record
+ * with the offset of every path and chunk, followed by the offset of the
+ * index itself and the magic again, for random access from the end.
+ *
+ * Positions are rounded to the nearest 1 / {@link #SCALE} of a unit, which
+ * is far below what shows at any sensible zoom. Rounding doesn't drift,
+ * since deltas are between rounded positions.
+ */
+public class DrawingWriter {
+
+    static final int MAGIC = 0x54756764;
+
+    static final int VERSION = 1;
+
+    static final int PATH = 1;
+
+    static final int CHUNK = 2;
+
+    static final int INDEX = 3;
+
+    static final int CHUNK_STEPS = 1 << 14;
+
+    static final double SCALE = 1024;
+
+    public static void write(Drawing drawing, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(drawing, out);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the drawing, so turtles can keep drawing
+     * meanwhile. Doesn't close the stream.
+     */
+    public static void write(Drawing drawing, OutputStream out) throws IOException {
+        new DrawingWriter(out).write(drawing);
+    }
+
+    private final CountingOutputStream counter;
+
+    private final DataOutputStream out;
+
+    /**
+     * Holds the body of a chunk until its length is known.
+     */
+    private byte[] buffer;
+
+    private int bufferSize;
+
+    private DrawingWriter(OutputStream out) {
+        counter = new CountingOutputStream(new BufferedOutputStream(out));
+        this.out = new DataOutputStream(counter);
+        buffer = new byte[1 << 16];
+    }
+
+    private void write(Drawing drawing) throws IOException {
+        List<Path> paths = drawing.paths;
+        long[] pathOffsets = new long[paths.size()];
+        long[][] chunkOffsets = new long[paths.size()][];
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        StepCursor end = new StepCursor();
+        for (int p = 0; p < pathOffsets.length; p++) {
+            Path path = paths.get(p);
+            StepStore steps = path.steps;
+            // The palette only grows, so it covers every step in the snapshot.
+            end.read(steps);
+            int paletteSize = steps.paletteSize();
+            pathOffsets[p] = counter.count;
+            out.writeByte(PATH);
+            out.writeDouble(path.width);
+            out.writeInt(path.color.getRGB());
+            writeVarint(paletteSize);
+            for (int c = 0; c < paletteSize; c++) {
+                Color color = steps.paletteColor(c);
+                out.writeBoolean(color != null);
+                if (color != null) {
+                    out.writeInt(color.getRGB());
+                }
+            }
+            writeVarint(end.count);
+            long[] offsets = new long[(end.count + CHUNK_STEPS - 1) / CHUNK_STEPS];
+            for (int c = 0; c < offsets.length; c++) {
+                offsets[c] = counter.count;
+                writeChunk(steps, end, c * CHUNK_STEPS, Math.min(end.count, (c + 1) * CHUNK_STEPS));
+            }
+            chunkOffsets[p] = offsets;
+        }
+        long indexOffset = counter.count;
+        out.writeByte(INDEX);
+        writeVarint(pathOffsets.length);
+        for (int p = 0; p < pathOffsets.length; p++) {
+            writeVarlong(pathOffsets[p]);
+            writeVarint(chunkOffsets[p].length);
+            for (long offset : chunkOffsets[p]) {
+                writeVarlong(offset);
+            }
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(MAGIC);
+        out.flush();
+    }
+
+    private void writeChunk(StepStore steps, StepCursor end, int from, int to) throws IOException {
+        bufferSize = 0;
+        double[] point = new double[2];
+        long lastX = 0;
+        long lastY = 0;
+        for (int i = from; i < to; i++) {
+            end.point(steps, i, point);
+            long x = Math.round(point[0] * SCALE);
+            long y = Math.round(point[1] * SCALE);
+            bufferVarlong(zigzag(x - lastX));
+            bufferVarlong(zigzag(y - lastY));
+            lastX = x;
+            lastY = y;
+        }
+        // Pen and color change rarely, so they go as runs, as many as it takes
+        // to cover the steps.
+        int runLength = 0;
+        int runValue = -1;
+        for (int i = from; i < to; i++) {
+            int value = steps.colorIndex(i) << 1 | (steps.penDown(i) ? 1 : 0);
+            if (value != runValue && runLength > 0) {
+                bufferVarlong(runLength);
+                bufferVarlong(runValue);
+                runLength = 0;
+            }
+            runValue = value;
+            runLength++;
+        }
+        bufferVarlong(runLength);
+        bufferVarlong(runValue);
+        out.writeByte(CHUNK);
+        writeVarint(to - from);
+        writeVarint(bufferSize);
+        out.write(buffer, 0, bufferSize);
+    }
+
+    private void bufferVarlong(long value) {
+        if (buffer.length - bufferSize < 10) {
+            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        }
+        while ((value & ~0x7fL) != 0) {
+            buffer[bufferSize++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[bufferSize++] = (byte) value;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        writeVarlong(value & 0xffffffffL);
+    }
+
+    private void writeVarlong(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+}
@@ -0,0 +1,55 @@
+package bagotricks.tuga.turtle;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * Scripts compiled by one engine, by the hash of their text. A compiled
+ * script belongs to the runtime that compiled it, so these last only as
+ * long as the runner. Which scripts are worth compiling ahead is kept across
+ * runners in {@link CompiledScripts}.
+ */
+class EngineCompiler {
+
+    private final ScriptEngine engine;
+
+    private final String language;
+
+    private final Map<String, CompiledScript> scripts;
+
+    EngineCompiler(ScriptEngine engine, String language) {
+        this.engine = engine;
+        this.language = language;
+        scripts = new HashMap<String, CompiledScript>();
+    }
+
+    /**
+     * @return the compiled script, or null if the engine can't compile
+     */
+    synchronized CompiledScript compile(String script) throws ScriptException {
+        if (!(engine instanceof Compilable)) {
+            return null;
+        }
+        String key = ResultCache.key(language, script);
+        CompiledScript compiled = scripts.get(key);
+        if (compiled == null) {
+            compiled = ((Compilable) engine).compile(script);
+            scripts.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Runs the script, compiled if it can be.
+     */
+    Object eval(String script) throws ScriptException {
+        CompiledScript compiled = compile(script);
+        return compiled != null ? compiled.eval() : engine.eval(new StringReader(script));
+    }
+
+}
@@ -0,0 +1,64 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ */
+class IntList {
+
+    private int[] values;
+
+    private int size;
+
+    IntList() {
+        values = new int[8];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops all values less than the given minimum, keeping the order.
+     */
+    void removeBelow(int minimum) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] >= minimum) {
+                values[kept++] = values[i];
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Sorts the values and drops duplicates.
+     */
+    void sortUnique() {
+        Arrays.sort(values, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        size = unique;
+    }
+
+}
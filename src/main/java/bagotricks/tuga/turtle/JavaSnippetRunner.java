@@ -0,0 +1,228 @@
+package bagotricks.tuga.turtle;
+
+import bagotricks.tuga.StopException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Runs programs written in Java, compiled in memory with the compiler of the
+ * JDK. A program is the body of {@link TugaProgram#run()}, or the body of a
+ * whole class when it has a run method of its own next to helper methods.
+ * Either way it calls the turtle as plain Java, which the JIT can make as
+ * fast as anything else in the app.
+ *
+ * Compiled classes are kept by the hash of the program for all runners, so
+ * running a program again starts right away. Each run gets a new instance.
+ */
+public class JavaSnippetRunner implements ScriptRunner {
+
+    /**
+     * Every program gets a class loader of its own, so they can share a
+     * name.
+     */
+    static final String CLASS_NAME = "TugaSnippet";
+
+    /**
+     * Whether a program declares its own run method.
+     */
+    private static final Pattern RUN_PATTERN = Pattern.compile("\\bvoid\\s+run\\s*\\(\\s*\\)");
+
+    /**
+     * Kept on one line, so lines in errors are the lines of the program.
+     */
+    private static final String HEADER = "import bagotricks.tuga.turtle.*; import static java.lang.Math.*; "
+            + "public class " + CLASS_NAME + " extends TugaProgram { ";
+
+    private static final Map<String, Class<? extends TugaProgram>> CLASSES = new LinkedHashMap<String, Class<? extends TugaProgram>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Class<? extends TugaProgram>> eldest) {
+            return size() > CompiledScripts.DEFAULT_LIMIT;
+        }
+    };
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private final String code;
+
+        Source(String code) {
+            super(URI.create("string:///" + CLASS_NAME + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+
+    }
+
+    /**
+     * Keeps compiled classes as bytes instead of writing files.
+     */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        final Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, final String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    classes.put(className, out);
+                    return out;
+                }
+            };
+        }
+
+    }
+
+    private static class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        MemoryClassLoader(Map<String, ByteArrayOutputStream> classes) {
+            super(TugaProgram.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            ByteArrayOutputStream bytes = classes.get(name);
+            if (bytes == null) {
+                return super.findClass(name);
+            }
+            byte[] code = bytes.toByteArray();
+            return defineClass(name, code, 0, code.length);
+        }
+
+    }
+
+    private Tuga tuga;
+
+    @Override
+    public String getLanguage() {
+        return "java";
+    }
+
+    @Override
+    public void init(Tuga tuga) {
+        this.tuga = tuga;
+    }
+
+    @Override
+    public void execute(String name, String script) {
+        TugaProgram program;
+        try {
+            program = compileClass(script).getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            // Thrown by the program's own field initializers.
+            throw buildException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Error: " + e.getMessage(), e);
+        }
+        program.setTuga(tuga);
+        try {
+            program.run();
+        } catch (StopException e) {
+            throw e;
+        } catch (RuntimeException | StackOverflowError e) {
+            throw buildException(e);
+        }
+    }
+
+    @Override
+    public void compile(String script) {
+        try {
+            compileClass(script);
+        } catch (RuntimeException e) {
+            // It may still be half written. Errors show when it runs.
+        }
+    }
+
+    @Override
+    public void warm(String script) {
+        try {
+            execute("", script);
+        } catch (RuntimeException e) {
+            // Only meant to warm up.
+        }
+    }
+
+    @Override
+    public void close() {
+        // Compiled classes are kept for other runners.
+    }
+
+    private static Class<? extends TugaProgram> compileClass(String script) {
+        String key = ResultCache.key("java", script);
+        synchronized (CLASSES) {
+            Class<? extends TugaProgram> type = CLASSES.get(key);
+            if (type == null) {
+                type = compileClass(key, script);
+                CLASSES.put(key, type);
+            }
+            return type;
+        }
+    }
+
+    private static Class<? extends TugaProgram> compileClass(String key, String script) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("Error: Java programs need Tuga to run on a JDK, not just a JRE");
+        }
+        boolean wholeClass = RUN_PATTERN.matcher(script).find();
+        String code = HEADER + (wholeClass ? "" : "public void run() { ") + script + (wholeClass ? "" : "\n}") + "\n}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null))) {
+            boolean compiled = compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-g"), null, Arrays.asList(new Source(code))).call();
+            if (!compiled) {
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        throw new RuntimeException("Error: " + diagnostic.getMessage(Locale.getDefault()) + " on line " + diagnostic.getLineNumber());
+                    }
+                }
+                throw new RuntimeException("Error: Couldn't compile");
+            }
+            return new MemoryClassLoader(fileManager.classes).loadClass(CLASS_NAME).asSubclass(TugaProgram.class);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Error: " + e.getMessage(), e);
+        }
+    }
+
+    private RuntimeException buildException(Throwable e) {
+        int lineNumber = -1;
+        for (StackTraceElement frame : e.getStackTrace()) {
+            // Including inner classes of the program.
+            if (frame.getClassName().equals(CLASS_NAME) || frame.getClassName().startsWith(CLASS_NAME + "$")) {
+                lineNumber = frame.getLineNumber();
+                break;
+            }
+        }
+        String message = e instanceof StackOverflowError ? "Too many calls inside each other" : e.toString();
+        return new RuntimeException("Error: " + message + (lineNumber >= 1 ? " on line " + lineNumber : ""), e);
+    }
+
+}
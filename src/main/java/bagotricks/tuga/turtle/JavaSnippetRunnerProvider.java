@@ -0,0 +1,41 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class JavaSnippetRunnerProvider implements ScriptRunnerProvider {
+
+    /**
+     * Mostly to get the compiler loaded and warm before the first program.
+     */
+    private static final String WARM_SCRIPT = ""
+            + "for (int i = 0; i < 100; i++) {\n"
+            + "    for (int side = 0; side < 4; side++) {\n"
+            + "        walk(i);\n"
+            + "        turn(right);\n"
+            + "    }\n"
+            + "    jump(1);\n"
+            + "    turn(3.6);\n"
+            + "}\n";
+
+    @Override
+    public String getLanguage() {
+        return "java";
+    }
+
+    @Override
+    public String getExtension() {
+        return "java";
+    }
+
+    @Override
+    public ScriptRunner create() {
+        return new JavaSnippetRunner();
+    }
+
+    @Override
+    public List<String> getWarmScripts() {
+        return Arrays.asList(WARM_SCRIPT);
+    }
+
+}
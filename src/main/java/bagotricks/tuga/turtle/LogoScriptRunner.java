@@ -0,0 +1,85 @@
+package bagotricks.tuga.turtle;
+
+import bagotricks.tuga.turtle.logo.LogoException;
+import bagotricks.tuga.turtle.logo.LogoParser;
+import bagotricks.tuga.turtle.logo.LogoProgram;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs programs in the small Logo of {@link LogoParser}. There's no runtime
+ * to start, and programs call the turtle straight from Java, so it suits
+ * the simple programs that don't need all of Ruby or Python.
+ */
+public class LogoScriptRunner implements ScriptRunner {
+
+    /**
+     * Programs already parsed, by the hash of their text. Parsed programs
+     * don't hold any state of a run, so all runners share them.
+     */
+    private static final Map<String, LogoProgram> PROGRAMS = new LinkedHashMap<String, LogoProgram>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LogoProgram> eldest) {
+            return size() > CompiledScripts.DEFAULT_LIMIT;
+        }
+    };
+
+    private Tuga tuga;
+
+    @Override
+    public String getLanguage() {
+        return "logo";
+    }
+
+    @Override
+    public void init(Tuga tuga) {
+        this.tuga = tuga;
+    }
+
+    @Override
+    public void execute(String name, String script) {
+        try {
+            parse(script).run(tuga);
+        } catch (LogoException e) {
+            throw new RuntimeException("Error: " + e.getMessage() + " on line " + e.line, e);
+        } catch (StackOverflowError e) {
+            throw new RuntimeException("Error: Too many procedure calls inside each other", e);
+        }
+    }
+
+    @Override
+    public void compile(String script) {
+        try {
+            parse(script);
+        } catch (LogoException e) {
+            // It may still be half written. Errors show when it runs.
+        }
+    }
+
+    @Override
+    public void warm(String script) {
+        try {
+            parse(script).run(tuga);
+        } catch (LogoException | StackOverflowError e) {
+            // Only meant to warm up.
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing to shut down.
+    }
+
+    private static LogoProgram parse(String script) {
+        String key = ResultCache.key("logo", script);
+        synchronized (PROGRAMS) {
+            LogoProgram program = PROGRAMS.get(key);
+            if (program == null) {
+                program = LogoParser.parse(script);
+                PROGRAMS.put(key, program);
+            }
+            return program;
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class LogoScriptRunnerProvider implements ScriptRunnerProvider {
+
+    private static final String WARM_SCRIPT = ""
+            + "to square :size\n"
+            + "  repeat 4 [forward :size right 90]\n"
+            + "end\n"
+            + "repeat 100 [square repcount jump 1 left 3.6]\n";
+
+    @Override
+    public String getLanguage() {
+        return "logo";
+    }
+
+    @Override
+    public String getExtension() {
+        return "logo";
+    }
+
+    @Override
+    public ScriptRunner create() {
+        return new LogoScriptRunner();
+    }
+
+    @Override
+    public List<String> getWarmScripts() {
+        return Arrays.asList(WARM_SCRIPT);
+    }
+
+}
@@ -1,8 +1,8 @@
 package bagotricks.tuga.turtle;
 
 import bagotricks.tuga.Controller;
-import bagotricks.tuga.Engine;
 import bagotricks.tuga.Library;
+import java.io.File;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
@@ -22,7 +22,12 @@ public class Main {
             
             Library library = new Library("Tuga Turtle", Examples.getAll(), Examples.getContent("Angle Patterns"));
             
-            Engine engine = new TurtleEngine();
+            TurtleEngine engine = new TurtleEngine();
+            String stepLog = System.getProperty("tuga.stepLog");
+            if (stepLog != null) {
+                engine.setStepLogDirectory(new File(stepLog));
+            }
+            engine.setResultCache(new ResultCache(new File(library.getDirectory(), "Cache")));
             engine.init();
             Controller controller = new Controller(engine, library);
             
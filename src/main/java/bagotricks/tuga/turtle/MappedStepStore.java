@@ -0,0 +1,241 @@
+package bagotricks.tuga.turtle;
+
+import bagotricks.tuga.Thrower;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Disk backed step store. Steps are appended to a file that is mapped into
+ * memory one fixed size chunk at a time, so the heap only holds the chunk
+ * table and the palette no matter how many steps the drawing has.
+ *
+ * Each step is a fixed size record: x and y as doubles followed by an int
+ * holding the color index with the pen state in the high bit.
+ *
+ * Like every store, a path holds at most {@link Integer#MAX_VALUE} steps.
+ * Billions of segments in a drawing are spread across its paths, one per
+ * turtle, each with a file of its own.
+ */
+public class MappedStepStore extends StepStore {
+
+    private static final int RECORD_BYTES = 20;
+
+    private static final int PEN_DOWN_BIT = 1 << 31;
+
+    private static final String PREFIX = "steps";
+
+    private static final String SUFFIX = ".log";
+
+    private static final String DIRECTORY_PREFIX = "tuga";
+
+    /**
+     * Held locked for as long as the process that made its directory runs.
+     */
+    private static final String LOCK_NAME = "lock";
+
+    /**
+     * Locks on the directories of this process, kept so they're held until
+     * it exits.
+     */
+    private static final List<FileLock> LOCKS = new ArrayList<FileLock>();
+
+    /**
+     * 1M steps, or 20 MB of address space, per chunk.
+     */
+    public static final int DEFAULT_CHUNK_STEPS = 1 << 20;
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final int chunkSteps;
+
+    /**
+     * Copied on write so readers can use it without locking. Kept after
+     * closing, so readers that were in the middle of a pass can finish it.
+     * The mapped regions go with the store once nothing uses it anymore.
+     */
+    private volatile MappedByteBuffer[] chunks;
+
+    /**
+     * Makes a directory for the step files of this process within the given
+     * one, after deleting those left behind by processes that have ended.
+     * Nothing else in the given directory is touched.
+     */
+    public static File createDirectory(File parent) throws IOException {
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("failed mkdirs for " + parent.getAbsolutePath());
+        }
+        deleteLeftovers(parent);
+        File directory = Files.createTempDirectory(parent.toPath(), DIRECTORY_PREFIX).toFile();
+        File lockFile = new File(directory, LOCK_NAME);
+        FileLock lock = new RandomAccessFile(lockFile, "rw").getChannel().lock();
+        synchronized (LOCKS) {
+            LOCKS.add(lock);
+        }
+        // Run in reverse, so the directory goes last, if it's empty by then.
+        directory.deleteOnExit();
+        lockFile.deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * Creates a store backed by a new temporary file in the given directory,
+     * which should be one made by {@link #createDirectory(File)}. The file is
+     * deleted when the store is closed.
+     */
+    public static MappedStepStore create(File directory) {
+        try {
+            File file = File.createTempFile(PREFIX, SUFFIX, directory);
+            return new MappedStepStore(file, DEFAULT_CHUNK_STEPS);
+        } catch (Exception e) {
+            throw Thrower.throwAny(e);
+        }
+    }
+
+    public MappedStepStore(File file, int chunkSteps) throws IOException {
+        if (chunkSteps <= 0 || chunkSteps > Integer.MAX_VALUE / RECORD_BYTES) {
+            throw new IllegalArgumentException("Bad chunk size: " + chunkSteps);
+        }
+        this.file = file;
+        this.chunkSteps = chunkSteps;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        chunks = new MappedByteBuffer[0];
+    }
+
+    @Override
+    protected void append(int index, double x, double y, boolean penDown, int colorIndex) {
+        int chunkIndex = index / chunkSteps;
+        if (chunkIndex == chunks.length) {
+            mapChunk(chunkIndex);
+        }
+        MappedByteBuffer chunk = chunks[chunkIndex];
+        int offset = offset(index);
+        chunk.putDouble(offset, x);
+        chunk.putDouble(offset + 8, y);
+        chunk.putInt(offset + 16, penDown ? colorIndex | PEN_DOWN_BIT : colorIndex);
+    }
+
+    @Override
+    protected void setPoint(int index, double x, double y) {
+        MappedByteBuffer chunk = chunk(index);
+        int offset = offset(index);
+        chunk.putDouble(offset, x);
+        chunk.putDouble(offset + 8, y);
+    }
+
+    @Override
+    protected double columnX(int index) {
+        return chunk(index).getDouble(offset(index));
+    }
+
+    @Override
+    protected double columnY(int index) {
+        return chunk(index).getDouble(offset(index) + 8);
+    }
+
+    @Override
+    public boolean penDown(int index) {
+        checkIndex(index);
+        return (chunk(index).getInt(offset(index) + 16) & PEN_DOWN_BIT) != 0;
+    }
+
+    @Override
+    public int colorIndex(int index) {
+        checkIndex(index);
+        return chunk(index).getInt(offset(index) + 16) & ~PEN_DOWN_BIT;
+    }
+
+    /**
+     * Closes and deletes the file. Readers still in a pass over the steps can
+     * finish it, since the chunks stay mapped, but no more steps can be
+     * added.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            Thrower.throwAny(e);
+        }
+        // Some platforms refuse while the file is still mapped. Then it goes
+        // with the rest of the directory the next time Tuga starts.
+        file.delete();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Deletes the directories of processes that have ended, which no longer
+     * hold their locks. Those of processes still running, this one included,
+     * are left alone, as are directories without a lock that may be in the
+     * middle of being made.
+     */
+    private static void deleteLeftovers(File parent) {
+        File[] directories = parent.listFiles();
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            File lockFile = new File(directory, LOCK_NAME);
+            if (!directory.getName().startsWith(DIRECTORY_PREFIX) || !lockFile.isFile()) {
+                continue;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(lockFile, "rw")) {
+                FileLock lock = file.getChannel().tryLock();
+                if (lock == null) {
+                    continue;
+                }
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File stale : files) {
+                        if (stale.getName().startsWith(PREFIX) && stale.getName().endsWith(SUFFIX)) {
+                            stale.delete();
+                        }
+                    }
+                }
+                lock.release();
+            } catch (IOException | OverlappingFileLockException e) {
+                // In use by this process, or not ours to delete.
+                continue;
+            }
+            lockFile.delete();
+            directory.delete();
+        }
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        return chunks[index / chunkSteps];
+    }
+
+    private int offset(int index) {
+        return (index % chunkSteps) * RECORD_BYTES;
+    }
+
+    private void mapChunk(int chunkIndex) {
+        long chunkBytes = (long) chunkSteps * RECORD_BYTES;
+        try {
+            MappedByteBuffer[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+            grown[chunkIndex] = channel.map(FileChannel.MapMode.READ_WRITE, chunkIndex * chunkBytes, chunkBytes);
+            chunks = grown;
+        } catch (IOException e) {
+            Thrower.throwAny(e);
+        }
+    }
+
+}
@@ -1,20 +1,31 @@
 package bagotricks.tuga.turtle;
 
 import java.awt.*;
-import java.util.*;
-import java.util.List;
 
 public class Path {
 
 	public Color color = Color.BLACK;
 
-	public List<Step> steps;
+	public final StepStore steps;
+
+	/**
+	 * How the turtle stood at each step, for seeking.
+	 */
+	public final Timeline timeline = new Timeline();
 
 	public double width = 4.5;
 
 	public Path() {
-		steps = new ArrayList<Step>();
-		steps.add(new Step(0, 0, false, null));
+		this(new ArrayStepStore());
+	}
+
+	public Path(StepStore steps) {
+		this(steps, 0, 0);
+	}
+
+	public Path(StepStore steps, double x, double y) {
+		this.steps = steps;
+		steps.add(x, y, false, null);
 	}
 
 }
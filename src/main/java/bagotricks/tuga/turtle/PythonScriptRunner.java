@@ -3,7 +3,6 @@ package bagotricks.tuga.turtle;
 import bagotricks.tuga.StopException;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.io.StringReader;
 import java.util.concurrent.CountDownLatch;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -21,13 +20,41 @@ public class PythonScriptRunner implements ScriptRunner {
      */
     private final CountDownLatch engineReadySignal;
 
+    /**
+     * Whether moves are collected on the Python side and handed over in
+     * batches.
+     */
+    private final boolean buffered;
+
+    /**
+     * Scripts already parsed and compiled by the engine.
+     */
+    private final EngineCompiler compiler;
+
     public PythonScriptRunner() {
+        this(false);
+    }
+
+    /**
+     * @param buffered whether to collect moves in a Python list and pass them
+     * to {@link Tuga#apply(double[])} in batches, rather than calling Java for
+     * each one. Batches are handed over when full, before any call that
+     * isn't buffered and when the script ends, so the drawing is the same.
+     */
+    public PythonScriptRunner(boolean buffered) {
+        this.buffered = buffered;
         engineReadySignal = new CountDownLatch(1);
         ScriptEngineManager manager = new ScriptEngineManager();
         engine = manager.getEngineByName("jython");
         if (engine == null) {
             throw new Error("Jython not found");
         }
+        compiler = new EngineCompiler(engine, getLanguage());
+    }
+
+    @Override
+    public String getLanguage() {
+        return "python";
     }
 
     @Override
@@ -36,13 +63,10 @@ public class PythonScriptRunner implements ScriptRunner {
         new Thread() {
             @Override
             public void run() {
-                long start = System.currentTimeMillis();
                 try {
                     createApi(tuga);
                 } catch (ScriptException ex) {
                 }
-                final long elapsed = System.currentTimeMillis() - start;
-                System.out.println(String.format("Jython initialized in %d ms", elapsed));
                 engineReadySignal.countDown();
             }
         }.start();
@@ -67,12 +91,59 @@ public class PythonScriptRunner implements ScriptRunner {
         engine.eval("up = False");
 
         // Bind the Java operations to simple Python methods
-        engine.eval("def color(val): tuga.color(val)");
-        engine.eval("def color3(r,b,g): tuga.color3(r,b,g)");
-        engine.eval("def jump(dist): tuga.jump(dist)");
-        engine.eval("def pen(down): tuga.pen(down)");
-        engine.eval("def turn(angle): tuga.turn(angle)");
-        engine.eval("def walk(dist): tuga.walk(dist)");
+        engine.eval("import jarray");
+        String flush = "";
+        if (buffered) {
+            flush = "_flush(); ";
+            engine.eval("_buffer = []");
+            engine.eval("def _flush():\n"
+                    + "    if _buffer:\n"
+                    + "        try:\n"
+                    + "            tuga.apply(jarray.array(_buffer, 'd'))\n"
+                    + "        finally:\n"
+                    + "            del _buffer[:]");
+            // Only plain numbers and booleans are buffered. Anything else goes
+            // straight to Java, which converts or rejects it as it would
+            // unbuffered.
+            String full = "\n    if len(_buffer) >= " + TugaCommands.BUFFER_LIMIT + ": _flush()";
+            engine.eval(bufferedMove("jump", "dist", TugaCommands.JUMP) + full);
+            engine.eval("def pen(down):\n"
+                    + "    if down is True or down is False:\n"
+                    + "        _buffer.append(" + TugaCommands.PEN_DOWN + ".0 if down else " + TugaCommands.PEN_UP + ".0)\n"
+                    + "    else:\n"
+                    + "        _flush()\n"
+                    + "        tuga.pen(down)" + full);
+            engine.eval(bufferedMove("turn", "angle", TugaCommands.TURN) + full);
+            engine.eval(bufferedMove("walk", "dist", TugaCommands.WALK) + full);
+        } else {
+            engine.eval("def jump(dist): tuga.jump(dist)");
+            engine.eval("def pen(down): tuga.pen(down)");
+            engine.eval("def turn(angle): tuga.turn(angle)");
+            engine.eval("def walk(dist): tuga.walk(dist)");
+        }
+        engine.eval("def color(val): " + flush + "tuga.color(val)");
+        engine.eval("def color3(r,b,g): " + flush + "tuga.color3(r,b,g)");
+        engine.eval("def spawn(program): " + flush + "tuga.spawn(program)");
+        // Bulk operations take many moves in one call, flat or in pairs.
+        engine.eval("def _doubles(values):\n"
+                + "    flat = []\n"
+                + "    for value in values:\n"
+                + "        if isinstance(value, (list, tuple)):\n"
+                + "            flat.extend([float(v) for v in value])\n"
+                + "        else:\n"
+                + "            flat.append(float(value))\n"
+                + "    return jarray.array(flat, 'd')");
+        engine.eval("def turn_walk(pairs): " + flush + "tuga.turnWalk(_doubles(pairs))");
+        engine.eval("def walk_to(points): " + flush + "tuga.walkTo(_doubles(points))");
+    }
+
+    private static String bufferedMove(String name, String arg, int command) {
+        return "def " + name + "(" + arg + "):\n"
+                + "    if type(" + arg + ") in (int, long, float):\n"
+                + "        _buffer.extend((" + command + ".0, " + arg + "))\n"
+                + "    else:\n"
+                + "        _flush()\n"
+                + "        tuga." + name + "(" + arg + ")";
     }
 
     @Override
@@ -82,11 +153,25 @@ public class PythonScriptRunner implements ScriptRunner {
         } catch (InterruptedException ex) {
         }
 
+        ScriptException failure = null;
         try {
-            engine.eval(new StringReader(script));
+            compiler.eval(script);
         } catch (ScriptException ex) {
-            if (ex.getCause() != null) {
-                Throwable cause = ex;
+            failure = ex;
+        }
+        if (buffered) {
+            // Whatever the script did before it ended or failed gets drawn.
+            try {
+                engine.eval("_flush()");
+            } catch (ScriptException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure.getCause() != null) {
+                Throwable cause = failure;
                 while (cause.getCause() != null) {
                     cause = cause.getCause();
                 }
@@ -95,7 +180,53 @@ public class PythonScriptRunner implements ScriptRunner {
                     throw (StopException) cause;
                 }
             }
-            throw buildException(ex);
+            throw buildException(failure);
+        }
+    }
+
+    @Override
+    public void compile(String script) {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        try {
+            compiler.compile(script);
+        } catch (ScriptException ex) {
+            // It may still be half written. Errors show when it runs.
+        }
+    }
+
+    @Override
+    public void warm(String script) {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        // Definitions go in a copy of the globals that's dropped after.
+        engine.put("_warm_script", script);
+        try {
+            engine.eval("exec _warm_script in dict(globals())");
+        } catch (ScriptException ex) {
+        }
+        try {
+            engine.eval("del _warm_script" + (buffered ? "\n_flush()" : ""));
+        } catch (ScriptException ex) {
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        // Cleans up the interpreter and its system state.
+        if (engine instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) engine).close();
+            } catch (Exception ex) {
+            }
         }
     }
 
@@ -0,0 +1,38 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PythonScriptRunnerProvider implements ScriptRunnerProvider {
+
+    private static final String WARM_SCRIPT = ""
+            + "def square(size):\n"
+            + "    for i in range(4):\n"
+            + "        walk(size)\n"
+            + "        turn(right)\n"
+            + "for i in range(100):\n"
+            + "    square(i)\n"
+            + "    jump(1)\n"
+            + "    turn(3.6)\n";
+
+    @Override
+    public String getLanguage() {
+        return "python";
+    }
+
+    @Override
+    public String getExtension() {
+        return "py";
+    }
+
+    @Override
+    public ScriptRunner create() {
+        return new PythonScriptRunner(true);
+    }
+
+    @Override
+    public List<String> getWarmScripts() {
+        return Arrays.asList(WARM_SCRIPT);
+    }
+
+}
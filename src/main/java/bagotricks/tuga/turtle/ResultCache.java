@@ -0,0 +1,276 @@
+package bagotricks.tuga.turtle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers the command logs of finished runs by a hash of the language and
+ * the program text, so running an unchanged program can replay its log
+ * instead of the script. Logs are kept in a least recently used map with a
+ * memory budget and, if given a directory, in files there that outlive the
+ * application.
+ *
+ * Only deterministic programs that draw and do nothing else belong here. See
+ * {@link #isCacheable}.
+ */
+public class ResultCache {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 16L << 20;
+
+    public static final long DEFAULT_DISK_BUDGET = 64L << 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Random numbers, in Ruby, Python, Logo or Java.
+     */
+    private static final Pattern RANDOM_PATTERN = Pattern.compile("\\b(?:rand|random|Random|ThreadLocalRandom)\\b");
+
+    /**
+     * Seeding the random numbers with a number written in the program, in
+     * Ruby, Python or Java.
+     */
+    private static final Pattern SEED_PATTERN = Pattern.compile("\\b(?:srand\\s*\\(?|seed\\s*\\(|Random(?:\\.new)?\\s*\\()\\s*[-+]?\\d");
+
+    /**
+     * Printing, in Ruby, Python, Logo or Java.
+     */
+    private static final Pattern OUTPUT_PATTERN = Pattern.compile("\\b(?:puts|print|printf|println|pp|p|show|warn)\\b|\\bSystem\\.(?:out|err)\\b|\\$std(?:out|err)\\b|\\bsys\\.std(?:out|err)\\b");
+
+    /**
+     * The time of day, in Ruby, Python or Java.
+     */
+    private static final Pattern CLOCK_PATTERN = Pattern.compile("\\b(?:Time\\.now|time\\.time|currentTimeMillis|nanoTime)\\b");
+
+    /**
+     * Null to keep logs in memory only.
+     */
+    private final File directory;
+
+    private final long memoryBudget;
+
+    private final long diskBudget;
+
+    private final LinkedHashMap<String, byte[]> logs;
+
+    private long memorySize;
+
+    public ResultCache(File directory) {
+        this(directory, DEFAULT_MEMORY_BUDGET, DEFAULT_DISK_BUDGET);
+    }
+
+    public ResultCache(File directory, long memoryBudget, long diskBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        logs = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Whether replaying the log of an earlier run does all a run of the
+     * program would. A replay only draws, so programs that print must run
+     * again, and so must programs that don't draw the same every time.
+     */
+    public static boolean isCacheable(String script) {
+        return isDeterministic(script) && !OUTPUT_PATTERN.matcher(script).find();
+    }
+
+    /**
+     * A program is taken to be deterministic unless it uses random numbers
+     * without seeding them with a number or looks at the clock. This goes by
+     * the text alone, so it can be fooled, but a seeded program has its seed
+     * in the text and so in the key.
+     */
+    public static boolean isDeterministic(String script) {
+        if (CLOCK_PATTERN.matcher(script).find()) {
+            return false;
+        }
+        return !RANDOM_PATTERN.matcher(script).find() || SEED_PATTERN.matcher(script).find();
+    }
+
+    public static String key(String language, String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(language.getBytes(UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(script.getBytes(UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-1.
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the log stored under the key, or null if none
+     */
+    public synchronized byte[] get(String key) {
+        byte[] log = logs.get(key);
+        if (log == null && directory != null) {
+            File file = new File(directory, key + SUFFIX);
+            if (file.isFile()) {
+                try {
+                    log = read(file);
+                    remember(key, log);
+                    // Counts as recent use for trimming the disk.
+                    file.setLastModified(System.currentTimeMillis());
+                } catch (IOException e) {
+                    // Treat it as missing, and don't trip on it again.
+                    file.delete();
+                    log = null;
+                }
+            }
+        }
+        return log;
+    }
+
+    public synchronized void put(String key, byte[] log) {
+        remember(key, log);
+        if (directory != null && log.length <= diskBudget) {
+            try {
+                write(key, log);
+                trimDisk();
+            } catch (IOException e) {
+                // The cache is only a shortcut, so carry on without the file.
+                System.err.println("Failed to cache " + key + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Forgets the log stored under the key, e.g. because it couldn't be
+     * replayed.
+     */
+    public synchronized void remove(String key) {
+        byte[] log = logs.remove(key);
+        if (log != null) {
+            memorySize -= log.length;
+        }
+        if (directory != null) {
+            new File(directory, key + SUFFIX).delete();
+        }
+    }
+
+    public synchronized void clear() {
+        logs.clear();
+        memorySize = 0;
+        if (directory != null) {
+            for (File file : files()) {
+                file.delete();
+            }
+        }
+    }
+
+    private File[] files() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private byte[] read(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Too big: " + file);
+        }
+        byte[] log = new byte[(int) length];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < log.length) {
+                int count = in.read(log, offset, log.length - offset);
+                if (count < 0) {
+                    throw new IOException("Truncated: " + file);
+                }
+                offset += count;
+            }
+        }
+        return log;
+    }
+
+    private void remember(String key, byte[] log) {
+        if (log.length > memoryBudget) {
+            return;
+        }
+        byte[] old = logs.put(key, log);
+        if (old != null) {
+            memorySize -= old.length;
+        }
+        memorySize += log.length;
+        Iterator<Map.Entry<String, byte[]>> eldest = logs.entrySet().iterator();
+        while (memorySize > memoryBudget) {
+            memorySize -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private void trimDisk() {
+        File[] files = files();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= diskBudget) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && size > diskBudget; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private void write(String key, byte[] log) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("failed mkdirs for " + directory.getAbsolutePath());
+        }
+        // Write aside and rename, so a reader never sees half a log.
+        File temp = File.createTempFile("cache", ".tmp", directory);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(log);
+            }
+            File file = new File(directory, key + SUFFIX);
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("failed rename to " + file.getAbsolutePath());
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+}
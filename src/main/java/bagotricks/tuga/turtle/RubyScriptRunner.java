@@ -1,14 +1,15 @@
 package bagotricks.tuga.turtle;
 
 import bagotricks.tuga.StopException;
-import java.io.StringReader;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import org.jruby.embed.AttributeName;
 import org.jruby.exceptions.RaiseException;
 import org.jruby.runtime.builtin.IRubyObject;
 
@@ -24,11 +25,41 @@ public class RubyScriptRunner implements ScriptRunner {
      */
     private final CountDownLatch engineReadySignal;
 
+    /**
+     * Whether moves are collected on the Ruby side and handed over in
+     * batches.
+     */
+    private final boolean buffered;
+
+    /**
+     * Scripts already parsed and compiled by the engine.
+     */
+    private final EngineCompiler compiler;
+
     public RubyScriptRunner() {
+        this(false);
+    }
+
+    /**
+     * @param buffered whether to collect moves in a Ruby array and pass them
+     * to {@link Tuga#apply(double[])} in batches, rather than calling Java for
+     * each one. Batches are handed over when full, before any call that
+     * isn't buffered and when the script ends, so the drawing is the same.
+     */
+    public RubyScriptRunner(boolean buffered) {
+        this.buffered = buffered;
         System.setProperty("org.jruby.embed.localvariable.behavior", "persistent");
+        // Each runner gets a runtime of its own rather than sharing one.
+        System.setProperty("org.jruby.embed.localcontext.scope", "singlethread");
         engineReadySignal = new CountDownLatch(1);
         ScriptEngineManager manager = new ScriptEngineManager();
         engine = manager.getEngineByName("jruby");
+        compiler = new EngineCompiler(engine, getLanguage());
+    }
+
+    @Override
+    public String getLanguage() {
+        return "ruby";
     }
 
     @Override
@@ -37,13 +68,10 @@ public class RubyScriptRunner implements ScriptRunner {
         new Thread() {
             @Override
             public void run() {
-                long start = System.currentTimeMillis();
                 try {
                     createRubyApi(tuga);
                 } catch (ScriptException ex) {
                 }
-                final long elapsed = System.currentTimeMillis() - start;
-                System.out.println(String.format("JRuby initialized in %d ms", elapsed));
                 engineReadySignal.countDown();
             }
         }.start();
@@ -67,12 +95,44 @@ public class RubyScriptRunner implements ScriptRunner {
         engine.eval("def up; false end");
 
         // Bind the Java operations to simple Ruby methods
-        engine.eval("def color(val); $tuga.color(val) end");
-        engine.eval("def color3(r,b,g); $tuga.color3(r,b,g) end");
-        engine.eval("def jump(dist); $tuga.jump(dist) end");
-        engine.eval("def pen(down); $tuga.pen(down) end");
-        engine.eval("def turn(angle); $tuga.turn(angle) end");
-        engine.eval("def walk(dist); $tuga.walk(dist) end");
+        String flush = "";
+        if (buffered) {
+            flush = "tuga_flush; ";
+            engine.eval("$tuga_buffer = []");
+            engine.eval("def tuga_flush\n"
+                    + "  return if $tuga_buffer.empty?\n"
+                    + "  begin\n"
+                    + "    $tuga.apply($tuga_buffer.to_java(:double))\n"
+                    + "  ensure\n"
+                    + "    $tuga_buffer.clear\n"
+                    + "  end\n"
+                    + "end");
+            // Only plain numbers and booleans are buffered. Anything else goes
+            // straight to Java, which converts or rejects it as it would
+            // unbuffered.
+            String full = "; tuga_flush if $tuga_buffer.size >= " + TugaCommands.BUFFER_LIMIT + "; nil end";
+            engine.eval(bufferedMove("jump", "dist", TugaCommands.JUMP) + full);
+            engine.eval("def pen(down); if true.equal?(down) || false.equal?(down) then $tuga_buffer.push(down ? " + TugaCommands.PEN_DOWN + " : " + TugaCommands.PEN_UP + ") else tuga_flush; $tuga.pen(down) end" + full);
+            engine.eval(bufferedMove("turn", "angle", TugaCommands.TURN) + full);
+            engine.eval(bufferedMove("walk", "dist", TugaCommands.WALK) + full);
+        } else {
+            engine.eval("def jump(dist); $tuga.jump(dist) end");
+            engine.eval("def pen(down); $tuga.pen(down) end");
+            engine.eval("def turn(angle); $tuga.turn(angle) end");
+            engine.eval("def walk(dist); $tuga.walk(dist) end");
+        }
+        engine.eval("def color(val); " + flush + "$tuga.color(val) end");
+        engine.eval("def color3(r,b,g); " + flush + "$tuga.color3(r,b,g) end");
+        engine.eval("def spawn(&block); " + flush + "$tuga.spawn(&block) end");
+        // Bulk operations take many moves in one call, flat or in pairs.
+        engine.eval("def turn_walk(*pairs); " + flush + "$tuga.turnWalk(pairs.flatten.to_java(:double)) end");
+        engine.eval("def walk_to(*points); " + flush + "$tuga.walkTo(points.flatten.to_java(:double)) end");
+    }
+
+    private static String bufferedMove(String name, String arg, int command) {
+        return "def " + name + "(" + arg + "); if Float === " + arg + " || Integer === " + arg
+                + " then $tuga_buffer.push(" + command + ", " + arg + ")"
+                + " else tuga_flush; $tuga." + name + "(" + arg + ") end";
     }
 
     @Override
@@ -82,11 +142,25 @@ public class RubyScriptRunner implements ScriptRunner {
         } catch (InterruptedException ex) {
         }
 
+        ScriptException failure = null;
         try {
-            engine.eval(new StringReader(script));
+            compiler.eval(script);
         } catch (ScriptException ex) {
-            if (ex.getCause() != null) {
-                Throwable cause = ex;
+            failure = ex;
+        }
+        if (buffered) {
+            // Whatever the script did before it ended or failed gets drawn.
+            try {
+                engine.eval("tuga_flush");
+            } catch (ScriptException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure.getCause() != null) {
+                Throwable cause = failure;
                 while (cause.getCause() != null) {
                     cause = cause.getCause();
                 }
@@ -95,7 +169,53 @@ public class RubyScriptRunner implements ScriptRunner {
                     throw (StopException) cause;
                 }
             }
-            throw buildException(ex);
+            throw buildException(failure);
+        }
+    }
+
+    @Override
+    public void compile(String script) {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        try {
+            compiler.compile(script);
+        } catch (ScriptException ex) {
+            // It may still be half written. Errors show when it runs.
+        }
+    }
+
+    @Override
+    public void warm(String script) {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        // Methods defined in instance_eval go on a throwaway object, and
+        // locals stay in its block.
+        engine.put("$tuga_warm_script", script);
+        try {
+            engine.eval("Object.new.instance_eval($tuga_warm_script)");
+        } catch (ScriptException ex) {
+        }
+        try {
+            engine.eval("$tuga_warm_script = nil" + (buffered ? "; tuga_flush" : ""));
+        } catch (ScriptException ex) {
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            engineReadySignal.await();
+        } catch (InterruptedException ex) {
+        }
+        // JRuby tears the runtime down after the next eval.
+        engine.getContext().setAttribute(AttributeName.TERMINATION.toString(), true, ScriptContext.ENGINE_SCOPE);
+        try {
+            engine.eval("nil");
+        } catch (ScriptException ex) {
         }
     }
 
@@ -0,0 +1,37 @@
+package bagotricks.tuga.turtle;
+
+import bagotricks.tuga.Program;
+import bagotricks.tuga.turtle.examples.Examples;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RubyScriptRunnerProvider implements ScriptRunnerProvider {
+
+    @Override
+    public String getLanguage() {
+        return "ruby";
+    }
+
+    @Override
+    public String getExtension() {
+        return "rb";
+    }
+
+    @Override
+    public ScriptRunner create() {
+        return new RubyScriptRunner(true);
+    }
+
+    /**
+     * @return the bundled examples, which are in Ruby
+     */
+    @Override
+    public List<String> getWarmScripts() {
+        List<String> scripts = new ArrayList<>();
+        for (Program example : Examples.getAll()) {
+            scripts.add(example.getContent());
+        }
+        return scripts;
+    }
+
+}
@@ -2,7 +2,32 @@ package bagotricks.tuga.turtle;
 
 public interface ScriptRunner {
 
+    /**
+     * @return a short lowercase name for the language of the scripts, such as
+     * "ruby"
+     */
+    String getLanguage();
+
     void init(Tuga tuga);
 
     void execute(String name, String script);
+
+    /**
+     * Parses and compiles a script ahead of its run, where the language
+     * allows, so running the same text later starts right away. Errors are
+     * ignored until it runs.
+     */
+    void compile(String script);
+
+    /**
+     * Runs a script just to warm up the runtime, keeping its definitions and
+     * variables out of the way of later scripts. Errors are ignored.
+     */
+    void warm(String script);
+
+    /**
+     * Shuts down the runtime once the runner is done with. Nothing runs on it
+     * after.
+     */
+    void close();
 }
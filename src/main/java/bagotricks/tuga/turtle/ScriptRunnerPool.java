@@ -0,0 +1,359 @@
+package bagotricks.tuga.turtle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps script runners started and warmed up ahead of time, so that pressing
+ * Go doesn't wait for a runtime to start or run its scripts through cold
+ * code. Each run takes a runner of its own, since scripts leave definitions
+ * and variables behind, and a new one is made in the background to replace
+ * it.
+ *
+ * Programs about to run can be compiled ahead of time in the runners
+ * waiting with {@link #prepare(String)}. Runners made after compile the
+ * programs prepared or run lately, so running one again doesn't wait for it
+ * to compile.
+ *
+ * Runners are closed in the background once {@link #retire(ScriptRunner)}d
+ * after their run, and those still waiting when the pool is shut down.
+ */
+public class ScriptRunnerPool {
+
+    public interface Factory {
+
+        /**
+         * @return the language of the runners made, the same as
+         * {@link ScriptRunner#getLanguage()}
+         */
+        String getLanguage();
+
+        ScriptRunner create();
+
+    }
+
+    /**
+     * Forwards to the turtle the runner was made for, or to nothing while
+     * warming up.
+     */
+    private static class Target implements Tuga {
+
+        volatile Tuga tuga = new NullTuga();
+
+        @Override
+        public void apply(double[] commands) {
+            tuga.apply(commands);
+        }
+
+        @Override
+        public float[] color(float[] val) {
+            return tuga.color(val);
+        }
+
+        @Override
+        public float[] color3(float red, float green, float blue) {
+            return tuga.color3(red, green, blue);
+        }
+
+        @Override
+        public void jump(double distance) {
+            tuga.jump(distance);
+        }
+
+        @Override
+        public void pen(boolean down) {
+            tuga.pen(down);
+        }
+
+        @Override
+        public void spawn(TurtleProgram program) {
+            tuga.spawn(program);
+        }
+
+        @Override
+        public void turn(double angle) {
+            tuga.turn(angle);
+        }
+
+        @Override
+        public void turnWalk(double[] pairs) {
+            tuga.turnWalk(pairs);
+        }
+
+        @Override
+        public void walk(double distance) {
+            tuga.walk(distance);
+        }
+
+        @Override
+        public void walkTo(double[] points) {
+            tuga.walkTo(points);
+        }
+
+    }
+
+    /**
+     * Takes every call and draws nothing. Spawned programs run right away on
+     * it too, so their code warms up as well.
+     */
+    private static class NullTuga implements Tuga {
+
+        @Override
+        public void apply(double[] commands) {
+            TugaCommands.apply(this, commands);
+        }
+
+        @Override
+        public float[] color(float[] val) {
+            return val;
+        }
+
+        @Override
+        public float[] color3(float red, float green, float blue) {
+            return new float[]{red, green, blue};
+        }
+
+        @Override
+        public void jump(double distance) {
+        }
+
+        @Override
+        public void pen(boolean down) {
+        }
+
+        @Override
+        public void spawn(TurtleProgram program) {
+            program.run(this);
+        }
+
+        @Override
+        public void turn(double angle) {
+        }
+
+        @Override
+        public void turnWalk(double[] pairs) {
+        }
+
+        @Override
+        public void walk(double distance) {
+        }
+
+        @Override
+        public void walkTo(double[] points) {
+        }
+
+    }
+
+    public static final int DEFAULT_SIZE = 2;
+
+    /**
+     * How many of the scripts prepared or run lately new runners compile.
+     */
+    static final int COMPILED_LIMIT = 4;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final Factory factory;
+
+    private final int size;
+
+    private final List<String> warmScripts;
+
+    private final BlockingQueue<ScriptRunner> ready;
+
+    private final CompiledScripts compiled;
+
+    private final ExecutorService maker;
+
+    private volatile Tuga tuga;
+
+    private volatile boolean shutDown;
+
+    /**
+     * Why the last runner couldn't be made, if it couldn't.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * @param size how many warm runners to keep ready
+     * @param warmScripts run once by each runner before it's handed out,
+     * against a turtle that draws nothing
+     */
+    public ScriptRunnerPool(Factory factory, int size, List<String> warmScripts) {
+        this.factory = factory;
+        this.size = size;
+        this.warmScripts = new ArrayList<String>(warmScripts);
+        ready = new LinkedBlockingQueue<ScriptRunner>();
+        compiled = new CompiledScripts(factory.getLanguage(), COMPILED_LIMIT);
+        maker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Script runners");
+                thread.setDaemon(true);
+                // Stay out of the way of runs and the UI.
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    public String getLanguage() {
+        return factory.getLanguage();
+    }
+
+    /**
+     * Starts making runners in the background for scripts to drive the given
+     * turtle.
+     */
+    public void start(Tuga tuga) {
+        this.tuga = tuga;
+        for (int i = 0; i < size; i++) {
+            make();
+        }
+    }
+
+    /**
+     * Waits for a warm runner if none is ready yet. The runner is only for
+     * one run.
+     *
+     * @param script what the runner is for, which runners made after compile
+     */
+    public ScriptRunner take(String script) {
+        if (tuga == null) {
+            throw new IllegalStateException("Pool not started");
+        }
+        if (shutDown) {
+            throw new IllegalStateException("Pool shut down");
+        }
+        compiled.add(script);
+        ScriptRunner runner = null;
+        try {
+            while (runner == null) {
+                runner = ready.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (shutDown) {
+                    if (runner != null) {
+                        retire(runner);
+                    }
+                    throw new IllegalStateException("Pool shut down");
+                }
+                if (runner == null && failure != null) {
+                    Throwable cause = failure;
+                    failure = null;
+                    make();
+                    throw new RuntimeException("Error: Couldn't start " + getLanguage(), cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        make();
+        return runner;
+    }
+
+    /**
+     * Compiles a script in the background in every runner, so a run of it
+     * can skip parsing and compiling.
+     */
+    public void prepare(final String script) {
+        compiled.add(script);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                // Taken out meanwhile, so no run can start on them.
+                List<ScriptRunner> runners = new ArrayList<ScriptRunner>();
+                ready.drainTo(runners);
+                try {
+                    for (ScriptRunner runner : runners) {
+                        runner.compile(script);
+                    }
+                } finally {
+                    ready.addAll(runners);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes a runner taken for a run, once the run is done with it.
+     */
+    public void retire(final ScriptRunner runner) {
+        if (!submit(new Runnable() {
+            @Override
+            public void run() {
+                runner.close();
+            }
+        })) {
+            runner.close();
+        }
+    }
+
+    /**
+     * Stops making runners and closes those waiting, in the background.
+     * Runners already taken are still retired as usual.
+     */
+    public void shutdown() {
+        shutDown = true;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                List<ScriptRunner> runners = new ArrayList<ScriptRunner>();
+                ready.drainTo(runners);
+                for (ScriptRunner runner : runners) {
+                    runner.close();
+                }
+            }
+        });
+        maker.shutdown();
+    }
+
+    /**
+     * @return false if the pool is shut down, so the task won't run
+     */
+    private boolean submit(Runnable task) {
+        try {
+            maker.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void make() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (shutDown) {
+                    return;
+                }
+                ScriptRunner runner = null;
+                try {
+                    Target target = new Target();
+                    runner = factory.create();
+                    runner.init(target);
+                    for (String script : warmScripts) {
+                        runner.warm(script);
+                    }
+                    for (String script : compiled.recent()) {
+                        runner.compile(script);
+                    }
+                    target.tuga = tuga;
+                    ready.add(runner);
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                    if (runner != null) {
+                        runner.close();
+                    }
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,22 @@
+package bagotricks.tuga.turtle;
+
+import java.util.List;
+
+/**
+ * Makes runners for one language. Providers are found with
+ * {@link java.util.ServiceLoader}, so they should be cheap to load and leave
+ * starting the language to {@link #create()}.
+ */
+public interface ScriptRunnerProvider extends ScriptRunnerPool.Factory {
+
+    /**
+     * @return the file extension of programs in the language, such as "rb"
+     */
+    String getExtension();
+
+    /**
+     * @return scripts to warm up new runners with
+     */
+    List<String> getWarmScripts();
+
+}
@@ -0,0 +1,80 @@
+package bagotricks.tuga.turtle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The languages programs can be written in, as found by {@link ServiceLoader}
+ * from {@link ScriptRunnerProvider}s. A language is only started, in a
+ * {@link ScriptRunnerPool} of its own, once a program in it is about to run,
+ * so nobody pays for the languages they don't use.
+ */
+public class ScriptRunnerRegistry {
+
+    /**
+     * By file extension.
+     */
+    private final Map<String, ScriptRunnerProvider> providers;
+
+    /**
+     * Pools started so far, by file extension.
+     */
+    private final Map<String, ScriptRunnerPool> pools;
+
+    private Tuga tuga;
+
+    public ScriptRunnerRegistry() {
+        this(ServiceLoader.load(ScriptRunnerProvider.class));
+    }
+
+    public ScriptRunnerRegistry(Iterable<? extends ScriptRunnerProvider> providers) {
+        this.providers = new LinkedHashMap<>();
+        for (ScriptRunnerProvider provider : providers) {
+            this.providers.put(provider.getExtension(), provider);
+        }
+        pools = new LinkedHashMap<>();
+    }
+
+    /**
+     * Sets the turtle for scripts to drive, once pools are wanted.
+     */
+    public synchronized void start(Tuga tuga) {
+        this.tuga = tuga;
+    }
+
+    public boolean supports(String extension) {
+        return providers.containsKey(extension);
+    }
+
+    /**
+     * Starts the language for programs with the extension, if not already.
+     */
+    public synchronized ScriptRunnerPool getPool(String extension) {
+        ScriptRunnerPool pool = pools.get(extension);
+        if (pool == null) {
+            ScriptRunnerProvider provider = providers.get(extension);
+            if (provider == null) {
+                throw new RuntimeException("Error: No language for ." + extension + " programs");
+            }
+            if (tuga == null) {
+                throw new IllegalStateException("Registry not started");
+            }
+            pool = new ScriptRunnerPool(provider, ScriptRunnerPool.DEFAULT_SIZE, provider.getWarmScripts());
+            pool.start(tuga);
+            pools.put(extension, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Shuts down every pool started so far. A pool wanted after starts anew.
+     */
+    public synchronized void shutdown() {
+        for (ScriptRunnerPool pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+
+}
@@ -0,0 +1,144 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paints a finished drawing as it was at an earlier step, for scrubbing
+ * through a run. Every {@link #SNAPSHOT_INTERVAL} steps, a raster
+ * snapshot of the view is kept in a least recently used cache with a memory
+ * budget, so a seek only draws the steps since the nearest snapshot. A missing
+ * snapshot is built from the nearest earlier one, keeping the ones on the way.
+ *
+ * A step index applies to every path at once.
+ */
+class ScrubRenderer {
+
+    static final int SNAPSHOT_INTERVAL = 4096;
+
+    static final long DEFAULT_SNAPSHOT_BUDGET = 64L << 20;
+
+    private final long budget;
+
+    /**
+     * Snapshot i shows the segments up to step i times the interval.
+     */
+    private final LinkedHashMap<Integer, BufferedImage> snapshots;
+
+    private List<Path> paths;
+
+    private AffineTransform transform;
+
+    private int width;
+
+    private int height;
+
+    ScrubRenderer(long budget) {
+        this.budget = budget;
+        snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Paints the segments up to the given step into device space.
+     */
+    void paint(Graphics2D g, List<Path> paths, AffineTransform transform, int width, int height, int step) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (paths != this.paths || !transform.equals(this.transform) || width != this.width || height != this.height) {
+            clear();
+            this.paths = paths;
+            this.transform = transform;
+            this.width = width;
+            this.height = height;
+        }
+        int interval = SNAPSHOT_INTERVAL;
+        BufferedImage snapshot = snapshot(step / interval);
+        if (snapshot != null) {
+            g.drawImage(snapshot, 0, 0, null);
+        }
+        g = (Graphics2D) g.create();
+        try {
+            g.transform(transform);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            paintRange(g, step / interval * interval, step);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    void clear() {
+        snapshots.clear();
+        paths = null;
+    }
+
+    /**
+     * @return the snapshot at the given checkpoint, or null for the blank one
+     * at the start
+     */
+    private BufferedImage snapshot(int checkpoint) {
+        if (checkpoint == 0) {
+            return null;
+        }
+        BufferedImage snapshot = snapshots.get(checkpoint);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        int from = checkpoint - 1;
+        while (from > 0 && !snapshots.containsKey(from)) {
+            from--;
+        }
+        BufferedImage previous = snapshot(from);
+        for (int next = from + 1; next <= checkpoint; next++) {
+            snapshot = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = snapshot.createGraphics();
+            try {
+                if (previous != null) {
+                    g.setComposite(AlphaComposite.Src);
+                    g.drawImage(previous, 0, 0, null);
+                    g.setComposite(AlphaComposite.SrcOver);
+                }
+                g.transform(transform);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                int interval = SNAPSHOT_INTERVAL;
+                paintRange(g, (next - 1) * interval, next * interval);
+            } finally {
+                g.dispose();
+            }
+            put(next, snapshot);
+            previous = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Paints the segments after step from up to and including step to.
+     */
+    private void paintRange(Graphics2D g, int from, int to) {
+        StepCursor end = new StepCursor();
+        for (Path path : paths) {
+            end.read(path.steps, to + 1);
+            if (end.count > from + 1) {
+                DrawingRenderer.paintSteps(g, path, from + 1, end);
+            }
+        }
+    }
+
+    private void put(int checkpoint, BufferedImage snapshot) {
+        snapshots.put(checkpoint, snapshot);
+        long snapshotBytes = 4L * width * height;
+        Iterator<Map.Entry<Integer, BufferedImage>> eldest = snapshots.entrySet().iterator();
+        while (snapshots.size() * snapshotBytes > budget && snapshots.size() > 1) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uniform grid over world coordinates that finds the pen down segments of a
+ * path near an area. Segment i runs from step i - 1 to step i. The index is
+ * updated incrementally as steps are added.
+ *
+ * Cells hold chunks of {@link #CHUNK_SIZE} consecutive segments rather than
+ * single segments, and each chunk at most once per cell. The heap the index
+ * takes then grows with the cells a path covers more than with its step
+ * count, which matters for paths whose steps are kept off the heap. Queries
+ * pay for it by returning every pen down segment of a chunk that touches the
+ * area, so a few more lines get drawn and clipped.
+ */
+class SegmentIndex {
+
+    /**
+     * Cell width and height in world units.
+     */
+    private static final double CELL_SIZE = 64;
+
+    /**
+     * Consecutive segments indexed together.
+     */
+    static final int CHUNK_SIZE = 64;
+
+    /**
+     * Segments covering more cells than this put their chunk in a list that
+     * is always searched instead.
+     */
+    private static final int MAX_CELLS_PER_SEGMENT = 256;
+
+    private final Map<Long, IntList> cells;
+
+    private final IntList large;
+
+    private final IntList chunks;
+
+    private final StepCursor cursor;
+
+    private final StepCursor snapshot;
+
+    private final double[] point;
+
+    private double minX = Double.POSITIVE_INFINITY;
+
+    private double minY = Double.POSITIVE_INFINITY;
+
+    private double maxX = Double.NEGATIVE_INFINITY;
+
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    SegmentIndex() {
+        cells = new HashMap<>();
+        large = new IntList();
+        chunks = new IntList();
+        cursor = new StepCursor();
+        snapshot = new StepCursor();
+        point = new double[2];
+    }
+
+    /**
+     * Indexes any steps added since the last update, up to a new snapshot of
+     * the path.
+     */
+    void update(Path path) {
+        update(path, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Indexes steps up to a new snapshot of at most the first limit steps.
+     * The limit must not go down between updates.
+     */
+    void update(Path path, int limit) {
+        StepStore steps = path.steps;
+        double margin = 0.5 * path.width;
+        snapshot.read(steps, limit);
+        int start = cursor.count;
+        if (cursor.lastMoved(steps, snapshot)) {
+            // The last segment got longer, so it might reach more cells now.
+            // Cells it already reached keep its chunk just once.
+            start--;
+        }
+        for (int i = Math.max(start, 1); i < snapshot.count; i++) {
+            if (steps.penDown(i)) {
+                snapshot.point(steps, i - 1, point);
+                double x0 = point[0];
+                double y0 = point[1];
+                snapshot.point(steps, i, point);
+                add(i, x0, y0, point[0], point[1], margin);
+            }
+        }
+        cursor.set(snapshot);
+    }
+
+    /**
+     * @return the snapshot of the path the index covers, which is also what
+     * tiles should be brought up to
+     */
+    StepCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return the bounds of all pen down segments, not counting the stroke
+     * width, or null if there are none
+     */
+    Rectangle2D getBounds() {
+        if (minX > maxX) {
+            return null;
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Collects the pen down segments of the indexed snapshot that might touch
+     * the area, sorted in drawing order and without duplicates.
+     */
+    void query(Path path, Rectangle2D area, IntList result) {
+        result.clear();
+        chunks.clear();
+        int cellX0 = cell(area.getMinX());
+        int cellX1 = cell(area.getMaxX());
+        int cellY0 = cell(area.getMinY());
+        int cellY1 = cell(area.getMaxY());
+        for (int cellY = cellY0; cellY <= cellY1; cellY++) {
+            for (int cellX = cellX0; cellX <= cellX1; cellX++) {
+                IntList cellChunks = cells.get(key(cellX, cellY));
+                if (cellChunks != null) {
+                    for (int i = 0; i < cellChunks.size(); i++) {
+                        chunks.add(cellChunks.get(i));
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < large.size(); i++) {
+            chunks.add(large.get(i));
+        }
+        chunks.sortUnique();
+        StepStore steps = path.steps;
+        for (int c = 0; c < chunks.size(); c++) {
+            int first = chunks.get(c) * CHUNK_SIZE;
+            int end = Math.min(first + CHUNK_SIZE, cursor.count);
+            for (int i = Math.max(first, 1); i < end; i++) {
+                if (steps.penDown(i)) {
+                    result.add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many chunk entries the cells and the large list hold
+     */
+    int entryCount() {
+        int count = large.size();
+        for (IntList cellChunks : cells.values()) {
+            count += cellChunks.size();
+        }
+        return count;
+    }
+
+    private void add(int segment, double x0, double y0, double x1, double y1, double margin) {
+        double left = Math.min(x0, x1);
+        double right = Math.max(x0, x1);
+        double bottom = Math.min(y0, y1);
+        double top = Math.max(y0, y1);
+        minX = Math.min(minX, left);
+        minY = Math.min(minY, bottom);
+        maxX = Math.max(maxX, right);
+        maxY = Math.max(maxY, top);
+        int cellX0 = cell(left - margin);
+        int cellX1 = cell(right + margin);
+        int cellY0 = cell(bottom - margin);
+        int cellY1 = cell(top + margin);
+        int chunk = segment / CHUNK_SIZE;
+        if ((long) (cellX1 - cellX0 + 1) * (cellY1 - cellY0 + 1) > MAX_CELLS_PER_SEGMENT) {
+            addChunk(large, chunk);
+            return;
+        }
+        for (int cellY = cellY0; cellY <= cellY1; cellY++) {
+            for (int cellX = cellX0; cellX <= cellX1; cellX++) {
+                Long key = key(cellX, cellY);
+                IntList cellChunks = cells.get(key);
+                if (cellChunks == null) {
+                    cellChunks = new IntList();
+                    cells.put(key, cellChunks);
+                }
+                addChunk(cellChunks, chunk);
+            }
+        }
+    }
+
+    /**
+     * Chunks only ever get added in order, so one already there is last.
+     */
+    private static void addChunk(IntList list, int chunk) {
+        int size = list.size();
+        if (size == 0 || list.get(size - 1) != chunk) {
+            list.add(chunk);
+        }
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static Long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+}
@@ -0,0 +1,71 @@
+package bagotricks.tuga.turtle;
+
+/**
+ * Remembers how far a reader has got through a {@link StepStore}. Since a
+ * compacting store can still move its last step, the cursor also remembers
+ * where the last step it read was at the time.
+ *
+ * A cursor also serves as a snapshot of a store that the writer keeps adding
+ * to, so that everything a reader does in one pass agrees on the same steps.
+ */
+class StepCursor {
+
+    int count;
+
+    double lastX;
+
+    double lastY;
+
+    private final double[] point = new double[2];
+
+    /**
+     * Takes a snapshot of how far the store is now.
+     */
+    void read(StepStore steps) {
+        read(steps, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Takes a snapshot of at most the first limit steps.
+     */
+    void read(StepStore steps, int limit) {
+        count = Math.min(steps.size(), limit);
+        if (count > 0) {
+            steps.point(count - 1, point);
+            lastX = point[0];
+            lastY = point[1];
+        }
+    }
+
+    void set(StepCursor other) {
+        count = other.count;
+        lastX = other.lastX;
+        lastY = other.lastY;
+    }
+
+    /**
+     * Reads the position of a step as of this snapshot.
+     */
+    void point(StepStore steps, int index, double[] xy) {
+        if (index == count - 1) {
+            xy[0] = lastX;
+            xy[1] = lastY;
+        } else {
+            // Earlier steps can't move anymore.
+            steps.point(index, xy);
+        }
+    }
+
+    /**
+     * @return whether the last step read has moved by the time of the newer
+     * snapshot
+     */
+    boolean lastMoved(StepStore steps, StepCursor now) {
+        if (count == 0) {
+            return false;
+        }
+        now.point(steps, count - 1, point);
+        return point[0] != lastX || point[1] != lastY;
+    }
+
+}
@@ -0,0 +1,247 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column oriented storage for the steps of a {@link Path}. Implementations
+ * keep coordinates in primitive columns, the pen state as a bit and the color
+ * as an index into a small palette shared by all steps, so no object is
+ * allocated per step.
+ *
+ * A store has a single writer, the thread of the turtle drawing the path, and
+ * any number of readers that need no lock. The writer fills in a step and only
+ * then publishes the new size through a volatile field, so a reader sees a
+ * consistent prefix of the steps. Published columns are never written again,
+ * except through the tail described at {@link #setCompacting(boolean)}.
+ *
+ * Steps are indexed by int, so a store holds at most
+ * {@link Integer#MAX_VALUE} of them.
+ */
+public abstract class StepStore implements Closeable {
+
+    /**
+     * Copied on write so readers can use it without locking.
+     */
+    private volatile Color[] palette;
+
+    private final Map<Color, Integer> paletteIndexes;
+
+    private boolean compacting;
+
+    private volatile int size;
+
+    /**
+     * Odd while the writer is changing the tail. Readers retry if it changes
+     * under them, like a sequence lock.
+     */
+    private volatile int tailStamp;
+
+    /**
+     * The step whose position is kept in tailX and tailY instead of the
+     * columns, or -1 if none.
+     */
+    private volatile int tailIndex = -1;
+
+    private volatile double tailX;
+
+    private volatile double tailY;
+
+    protected StepStore() {
+        palette = new Color[0];
+        paletteIndexes = new HashMap<Color, Integer>();
+    }
+
+    public void add(double x, double y, boolean penDown, Color color) {
+        int colorIndex = paletteIndex(color);
+        int index = size;
+        if (compacting && continuesLast(x, y, penDown, colorIndex)) {
+            setTail(index - 1, x, y);
+            return;
+        }
+        if (index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Path is full at " + index + " steps");
+        }
+        if (tailIndex >= 0) {
+            // The last step can't move anymore, so it goes in the columns.
+            setPoint(tailIndex, tailX, tailY);
+        }
+        append(index, x, y, penDown, colorIndex);
+        if (compacting) {
+            setTail(index, x, y);
+        } else if (tailIndex >= 0) {
+            setTail(-1, 0, 0);
+        }
+        size = index + 1;
+    }
+
+    public void add(Step step) {
+        add(step.x, step.y, step.penDown, step.color);
+    }
+
+    /**
+     * Convenience accessor that copies one step out into a new object. The
+     * paint loop should use the column accessors instead.
+     */
+    public Step get(int index) {
+        return new Step(x(index), y(index), penDown(index), color(index));
+    }
+
+    public boolean isCompacting() {
+        return compacting;
+    }
+
+    /**
+     * When compacting, a step that continues the last segment in exactly the
+     * same direction, with the same pen and color, moves the end of that
+     * segment instead of being appended. The drawing looks the same but has
+     * fewer steps. Readers must then expect the last step to move, and should
+     * read it with {@link #point(int, double[])} to get x and y that belong
+     * together.
+     *
+     * While it can still move, the last step is kept in volatile fields
+     * beside the columns and only copied into them when the next step is
+     * added.
+     */
+    public void setCompacting(boolean compacting) {
+        this.compacting = compacting;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double x(int index) {
+        checkIndex(index);
+        int stamp;
+        double x;
+        do {
+            stamp = tailStamp;
+            x = index == tailIndex ? tailX : columnX(index);
+        } while ((stamp & 1) != 0 || stamp != tailStamp);
+        return x;
+    }
+
+    public double y(int index) {
+        checkIndex(index);
+        int stamp;
+        double y;
+        do {
+            stamp = tailStamp;
+            y = index == tailIndex ? tailY : columnY(index);
+        } while ((stamp & 1) != 0 || stamp != tailStamp);
+        return y;
+    }
+
+    /**
+     * Reads the position of a step into xy[0] and xy[1]. Unlike separate
+     * calls to x and y, this can't mix two positions of a last step that the
+     * writer is moving meanwhile.
+     */
+    public void point(int index, double[] xy) {
+        checkIndex(index);
+        int stamp;
+        do {
+            stamp = tailStamp;
+            if (index == tailIndex) {
+                xy[0] = tailX;
+                xy[1] = tailY;
+            } else {
+                xy[0] = columnX(index);
+                xy[1] = columnY(index);
+            }
+        } while ((stamp & 1) != 0 || stamp != tailStamp);
+    }
+
+    public abstract boolean penDown(int index);
+
+    public abstract int colorIndex(int index);
+
+    public Color color(int index) {
+        return palette[colorIndex(index)];
+    }
+
+    public Color paletteColor(int colorIndex) {
+        return palette[colorIndex];
+    }
+
+    public int paletteSize() {
+        return palette.length;
+    }
+
+    /**
+     * Releases any resources outside the heap. The store must not be used
+     * afterwards.
+     */
+    @Override
+    public void close() {
+        // Nothing to release by default.
+    }
+
+    /**
+     * Writes a new step at the given index, which is the current size. Readers
+     * won't look at it until the size is published afterwards.
+     */
+    protected abstract void append(int index, double x, double y, boolean penDown, int colorIndex);
+
+    /**
+     * Writes the final position of a step that readers find in the tail until
+     * the next size is published.
+     */
+    protected abstract void setPoint(int index, double x, double y);
+
+    protected abstract double columnX(int index);
+
+    protected abstract double columnY(int index);
+
+    protected void checkIndex(int index) {
+        int size = this.size;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void setTail(int index, double x, double y) {
+        tailStamp++;
+        tailIndex = index;
+        tailX = x;
+        tailY = y;
+        tailStamp++;
+    }
+
+    private boolean continuesLast(double x, double y, boolean penDown, int colorIndex) {
+        int size = this.size;
+        if (size < 2) {
+            return false;
+        }
+        int last = size - 1;
+        if (penDown(last) != penDown || colorIndex(last) != colorIndex) {
+            return false;
+        }
+        double lastX = x(last);
+        double lastY = y(last);
+        double dx0 = lastX - x(last - 1);
+        double dy0 = lastY - y(last - 1);
+        double dx1 = x - lastX;
+        double dy1 = y - lastY;
+        // Same direction exactly, and neither segment is just a dot.
+        return dx0 * dy1 == dy0 * dx1 && dx0 * dx1 + dy0 * dy1 > 0;
+    }
+
+    private int paletteIndex(Color color) {
+        Integer index = paletteIndexes.get(color);
+        if (index == null) {
+            Color[] palette = this.palette;
+            index = palette.length;
+            palette = Arrays.copyOf(palette, index + 1);
+            palette[index] = color;
+            this.palette = palette;
+            paletteIndexes.put(color, index);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,95 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of raster tiles with a memory budget. Tiles are
+ * square blocks of device pixels at one scale, counted from the world origin,
+ * so panning reuses them and only newly exposed tiles need rasterizing.
+ */
+class TileCache {
+
+    static final int TILE_SIZE = 256;
+
+    private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+    private final long budget;
+
+    private final LinkedHashMap<Key, Tile> tiles;
+
+    TileCache(long budget) {
+        this.budget = budget;
+        tiles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    Tile get(double scale, int tileX, int tileY) {
+        return tiles.get(new Key(scale, tileX, tileY));
+    }
+
+    Tile create(double scale, int tileX, int tileY) {
+        Tile tile = new Tile(new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE));
+        tiles.put(new Key(scale, tileX, tileY), tile);
+        Iterator<Map.Entry<Key, Tile>> eldest = tiles.entrySet().iterator();
+        while (tiles.size() * TILE_BYTES > budget && tiles.size() > 1) {
+            eldest.next();
+            eldest.remove();
+        }
+        return tile;
+    }
+
+    void clear() {
+        tiles.clear();
+    }
+
+    static class Tile {
+
+        final BufferedImage image;
+
+        /**
+         * How far each path has been drawn into the tile.
+         */
+        StepCursor[] cursors;
+
+        Tile(BufferedImage image) {
+            this.image = image;
+            cursors = new StepCursor[0];
+        }
+
+    }
+
+    private static class Key {
+
+        final long scaleBits;
+
+        final int tileX;
+
+        final int tileY;
+
+        Key(double scale, int tileX, int tileY) {
+            this.scaleBits = Double.doubleToLongBits(scale);
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return scaleBits == other.scaleBits && tileX == other.tileX && tileY == other.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (int) (scaleBits ^ (scaleBits >>> 32));
+            hash = 31 * hash + tileX;
+            return 31 * hash + tileY;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a drawing at high resolution, e.g. for printing, using all cores.
+ * The image is split into tiles, the segments of every path are binned into
+ * the tiles they touch, and then the tiles are rasterized in parallel on a
+ * {@link ForkJoinPool}. Each tile draws into its own region of the shared
+ * image, so no copying is needed afterwards.
+ *
+ * Produces the same picture as {@link DrawingRenderer}.
+ *
+ * An exporter made without a pool starts its own, which stays around for
+ * further exports until the exporter is closed. A pool passed in is left
+ * for its owner to shut down.
+ */
+public class TiledExporter implements Closeable {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final ForkJoinPool pool;
+
+    private final boolean ownsPool;
+
+    private final int tileSize;
+
+    public TiledExporter() {
+        this(new ForkJoinPool(), true, DEFAULT_TILE_SIZE);
+    }
+
+    public TiledExporter(ForkJoinPool pool, int tileSize) {
+        this(pool, false, tileSize);
+    }
+
+    private TiledExporter(ForkJoinPool pool, boolean ownsPool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Bad tile size: " + tileSize);
+        }
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Shuts down the pool if the exporter started it.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    public BufferedImage render(Drawing drawing, int width, int height) {
+        return render(drawing, width, height, Color.WHITE);
+    }
+
+    public BufferedImage render(Drawing drawing, int width, int height, Color background) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        List<Path> paths = drawing.paths;
+        int columns = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+        // Turtles may still be drawing, so everything works from snapshots.
+        int pathCount = paths.size();
+        StepCursor[] ends = new StepCursor[pathCount];
+        IntList[][] bins = new IntList[pathCount][];
+        for (int p = 0; p < pathCount; p++) {
+            ends[p] = new StepCursor();
+            ends[p].read(paths.get(p).steps);
+            bins[p] = bin(paths.get(p), ends[p], width, height, columns, rows);
+        }
+        pool.invoke(new RasterizeTiles(image, paths, ends, bins, background, columns, 0, columns * rows));
+        return image;
+    }
+
+    public void writePng(Drawing drawing, int width, int height, File file) throws IOException {
+        if (!ImageIO.write(render(drawing, width, height), "png", file)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    /**
+     * Sorts the pen down segments of a path into the tiles their stroke
+     * might touch. Segments stay in drawing order within each tile.
+     */
+    private IntList[] bin(Path path, StepCursor end, int width, int height, int columns, int rows) {
+        IntList[] bins = new IntList[columns * rows];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = new IntList();
+        }
+        StepStore steps = path.steps;
+        double scale = Math.min(width, height) / DrawingRenderer.WORLD_SIZE;
+        double centerX = 0.5 * width;
+        double centerY = 0.5 * height;
+        // Half the stroke plus a pixel for antialiasing.
+        double margin = 0.5 * path.width * scale + 1;
+        double[] point = new double[2];
+        for (int i = 1; i < end.count; i++) {
+            if (!steps.penDown(i)) {
+                continue;
+            }
+            end.point(steps, i - 1, point);
+            double x0 = centerX + point[0] * scale;
+            double y0 = centerY - point[1] * scale;
+            end.point(steps, i, point);
+            double x1 = centerX + point[0] * scale;
+            double y1 = centerY - point[1] * scale;
+            int column0 = Math.max(0, (int) Math.floor((Math.min(x0, x1) - margin) / tileSize));
+            int column1 = Math.min(columns - 1, (int) Math.floor((Math.max(x0, x1) + margin) / tileSize));
+            int row0 = Math.max(0, (int) Math.floor((Math.min(y0, y1) - margin) / tileSize));
+            int row1 = Math.min(rows - 1, (int) Math.floor((Math.max(y0, y1) + margin) / tileSize));
+            for (int row = row0; row <= row1; row++) {
+                for (int column = column0; column <= column1; column++) {
+                    bins[row * columns + column].add(i);
+                }
+            }
+        }
+        return bins;
+    }
+
+    private class RasterizeTiles extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage image;
+
+        private final List<Path> paths;
+
+        private final StepCursor[] ends;
+
+        private final IntList[][] bins;
+
+        private final Color background;
+
+        private final int columns;
+
+        private final int start;
+
+        private final int end;
+
+        RasterizeTiles(BufferedImage image, List<Path> paths, StepCursor[] ends, IntList[][] bins, Color background, int columns, int start, int end) {
+            this.image = image;
+            this.paths = paths;
+            this.ends = ends;
+            this.bins = bins;
+            this.background = background;
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                rasterize(start);
+            } else if (end > start) {
+                int middle = (start + end) >>> 1;
+                invokeAll(
+                        new RasterizeTiles(image, paths, ends, bins, background, columns, start, middle),
+                        new RasterizeTiles(image, paths, ends, bins, background, columns, middle, end));
+            }
+        }
+
+        private void rasterize(int tile) {
+            int left = (tile % columns) * tileSize;
+            int top = (tile / columns) * tileSize;
+            int width = Math.min(tileSize, image.getWidth() - left);
+            int height = Math.min(tileSize, image.getHeight() - top);
+            Graphics2D g = image.getSubimage(left, top, width, height).createGraphics();
+            try {
+                if (background != null) {
+                    g.setColor(background);
+                    g.fillRect(0, 0, width, height);
+                }
+                g.translate(-left, -top);
+                DrawingRenderer.initGraphics(g, image.getWidth(), image.getHeight());
+                for (int p = 0; p < bins.length; p++) {
+                    DrawingRenderer.paintSegments(g, paths.get(p), bins[p][tile], ends[p]);
+                }
+            } finally {
+                g.dispose();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+
+/**
+ * Records how a turtle stood at each step of its path, so that seeking can
+ * show it without running the script again.
+ *
+ * The position is the step itself, and the pen and color are those the
+ * turtle moved with next, which the step after has. The heading is stored
+ * as a checkpoint wherever the steps can't tell it: when the turtle moved
+ * any other way than straight ahead, such as backwards, or didn't move at
+ * all. Walking forwards, the usual case, records nothing. The last step
+ * needs the turtle as the run left it, which the engine hands over when the
+ * run is done.
+ *
+ * Drawings that were loaded rather than run have no checkpoints, so their
+ * turtles face the way they moved next.
+ *
+ * Written by the turtle's thread. Reads work from a snapshot of the steps and
+ * can happen during a run.
+ */
+public class Timeline {
+
+    /**
+     * How far in degrees a heading may be from the way the turtle moved and
+     * still count as straight ahead.
+     */
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * The steps with a checkpoint, in order.
+     */
+    private final IntList checkpointSteps = new IntList();
+
+    /**
+     * The heading for each checkpoint.
+     */
+    private double[] headings = new double[8];
+
+    /**
+     * The turtle as the run left it, or null until then.
+     */
+    private volatile Turtle end;
+
+    /**
+     * Call after each step the turtle adds, with the turtle as it moved.
+     */
+    public void stepped(StepStore steps, Turtle turtle) {
+        int last = steps.size() - 1;
+        if (last < 1) {
+            return;
+        }
+        double heading = turtle.getAngle();
+        double moved = direction(steps.x(last - 1), steps.y(last - 1), steps.x(last), steps.y(last));
+        if (Double.isNaN(moved) || !sameAngle(heading, moved)) {
+            addCheckpoint(last - 1, heading);
+        }
+    }
+
+    /**
+     * Keeps a copy of the turtle at the end of a run.
+     */
+    public void finished(Turtle turtle) {
+        Turtle copy = new Turtle();
+        copy.set(turtle);
+        end = copy;
+    }
+
+    /**
+     * Finds the state of the turtle after the given step and whatever it did
+     * before the next one.
+     */
+    public void stateAt(StepStore steps, int step, Turtle turtle) {
+        StepCursor snapshot = new StepCursor();
+        snapshot.read(steps);
+        int last = snapshot.count - 1;
+        step = Math.max(0, Math.min(step, last));
+        Turtle end = this.end;
+        if (step == last && end != null) {
+            turtle.set(end);
+        } else {
+            turtle.reset();
+            int move = Math.min(step + 1, last);
+            if (move > 0) {
+                turtle.penDown = steps.penDown(move);
+                turtle.penColor = steps.color(move);
+            }
+            double heading = step < last ? movingHeading(steps, snapshot, step) : Double.NaN;
+            if (Double.isNaN(heading)) {
+                // Without a checkpoint, look ahead to where it went next.
+                heading = heading(steps, snapshot, step + 1, last + 1, 1);
+            }
+            if (Double.isNaN(heading) && end != null) {
+                heading = end.getAngle();
+            }
+            if (Double.isNaN(heading) && step > 0) {
+                heading = movingHeading(steps, snapshot, step - 1);
+            }
+            if (Double.isNaN(heading)) {
+                heading = heading(steps, snapshot, step, 0, -1);
+            }
+            if (!Double.isNaN(heading)) {
+                turtle.setAngle(heading);
+            }
+        }
+        setPoint(steps, snapshot, step, turtle);
+    }
+
+    /**
+     * Finds the turtle as it got to the given step, before anything it did
+     * after, such as for showing a run played back that far.
+     */
+    public void arrivedAt(StepStore steps, int step, Turtle turtle) {
+        StepCursor snapshot = new StepCursor();
+        snapshot.read(steps);
+        step = Math.max(0, Math.min(step, snapshot.count - 1));
+        turtle.reset();
+        double heading = step > 0 ? movingHeading(steps, snapshot, step - 1) : Double.NaN;
+        if (Double.isNaN(heading)) {
+            heading = heading(steps, snapshot, step, 0, -1);
+        }
+        if (!Double.isNaN(heading)) {
+            turtle.setAngle(heading);
+        }
+        setPoint(steps, snapshot, step, turtle);
+    }
+
+    /**
+     * @return the heading in degrees of the turtle as it moved from the step
+     * to the next, or NaN if it didn't move and there's no checkpoint
+     */
+    private double movingHeading(StepStore steps, StepCursor snapshot, int step) {
+        synchronized (this) {
+            int low = 0;
+            int high = checkpointSteps.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int found = checkpointSteps.get(middle);
+                if (found < step) {
+                    low = middle + 1;
+                } else if (found > step) {
+                    high = middle - 1;
+                } else {
+                    return headings[middle];
+                }
+            }
+        }
+        double[] from = new double[2];
+        double[] to = new double[2];
+        snapshot.point(steps, step, from);
+        snapshot.point(steps, step + 1, to);
+        return direction(from[0], from[1], to[0], to[1]);
+    }
+
+    /**
+     * @return the heading in degrees of the first move that went anywhere,
+     * looking at the moves to the steps from start up to but not including
+     * stop, or NaN if none
+     */
+    private static double heading(StepStore steps, StepCursor snapshot, int start, int stop, int direction) {
+        double[] from = new double[2];
+        double[] to = new double[2];
+        for (int i = start; i != stop; i += direction) {
+            snapshot.point(steps, i - 1, from);
+            snapshot.point(steps, i, to);
+            double heading = direction(from[0], from[1], to[0], to[1]);
+            if (!Double.isNaN(heading)) {
+                return heading;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private synchronized void addCheckpoint(int step, double heading) {
+        int index = checkpointSteps.size();
+        if (index == headings.length) {
+            headings = Arrays.copyOf(headings, index << 1);
+        }
+        checkpointSteps.add(step);
+        headings[index] = heading;
+    }
+
+    private static void setPoint(StepStore steps, StepCursor snapshot, int step, Turtle turtle) {
+        double[] point = new double[2];
+        snapshot.point(steps, step, point);
+        turtle.x = point[0];
+        turtle.y = point[1];
+    }
+
+    /**
+     * @return the direction in degrees from one point to another, or NaN if
+     * they're the same
+     */
+    private static double direction(double fromX, double fromY, double toX, double toY) {
+        if (fromX == toX && fromY == toY) {
+            return Double.NaN;
+        }
+        return Math.toDegrees(Math.atan2(toY - fromY, toX - fromX));
+    }
+
+    private static boolean sameAngle(double a, double b) {
+        double difference = Math.abs(a - b) % 360;
+        return Math.min(difference, 360 - difference) <= TOLERANCE;
+    }
+
+}
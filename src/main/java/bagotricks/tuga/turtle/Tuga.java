@@ -5,6 +5,12 @@ package bagotricks.tuga.turtle;
  */
 public interface Tuga {
 
+    /**
+     * Runs a batch of commands encoded as described in {@link TugaCommands},
+     * the same as calling each one in turn.
+     */
+    void apply(double[] commands);
+
     float[] color(float[] val);
 
     float[] color3(float red, float green, float blue);
@@ -13,8 +19,27 @@ public interface Tuga {
 
     void pen(boolean down);
 
+    /**
+     * Starts a new turtle where this one is, running the program on its own
+     * thread with its own path.
+     */
+    void spawn(TurtleProgram program);
+
     void turn(double angle);
 
+    /**
+     * Turns and walks for each pair of values, the same as calling turn with
+     * the first and walk with the second, but in a single call.
+     */
+    void turnWalk(double[] pairs);
+
     void walk(double distance);
 
+    /**
+     * Walks straight to each point in turn, given as pairs of x and y, and
+     * ends up heading the way it went last. The turtle doesn't turn for a
+     * point where it already is.
+     */
+    void walkTo(double[] points);
+
 }
@@ -0,0 +1,76 @@
+package bagotricks.tuga.turtle;
+
+/**
+ * Encoding of the commands passed to {@link Tuga#apply(double[])}, so that
+ * script wrappers can collect many calls in an array of their own and hand
+ * them over at once. Each command is an opcode followed by its argument, if
+ * any.
+ */
+public final class TugaCommands {
+
+    /**
+     * Followed by the distance.
+     */
+    public static final int WALK = 1;
+
+    /**
+     * Followed by the distance.
+     */
+    public static final int JUMP = 2;
+
+    /**
+     * Followed by the angle.
+     */
+    public static final int TURN = 3;
+
+    public static final int PEN_UP = 4;
+
+    public static final int PEN_DOWN = 5;
+
+    /**
+     * How many values script wrappers collect before handing them over.
+     */
+    public static final int BUFFER_LIMIT = 1024;
+
+    private TugaCommands() {
+        // Just constants and helpers.
+    }
+
+    /**
+     * Calls the turtle once for each command, the same as the script would
+     * have without buffering.
+     */
+    public static void apply(Tuga tuga, double[] commands) {
+        int i = 0;
+        while (i < commands.length) {
+            int op = (int) commands[i++];
+            switch (op) {
+                case WALK:
+                    tuga.walk(argument(commands, i++));
+                    break;
+                case JUMP:
+                    tuga.jump(argument(commands, i++));
+                    break;
+                case TURN:
+                    tuga.turn(argument(commands, i++));
+                    break;
+                case PEN_UP:
+                    tuga.pen(false);
+                    break;
+                case PEN_DOWN:
+                    tuga.pen(true);
+                    break;
+                default:
+                    throw new RuntimeException("Unknown command " + op + " at " + (i - 1));
+            }
+        }
+    }
+
+    private static double argument(double[] commands, int i) {
+        if (i >= commands.length) {
+            throw new RuntimeException("Missing argument at " + i);
+        }
+        return commands[i];
+    }
+
+}
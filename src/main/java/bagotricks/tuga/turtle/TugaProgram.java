@@ -0,0 +1,83 @@
+package bagotricks.tuga.turtle;
+
+/**
+ * What Java programs extend, with the same turtle commands and words as Ruby
+ * and Python scripts, so a program reads the same as in the other languages.
+ * See {@link JavaSnippetRunner}.
+ */
+public abstract class TugaProgram {
+
+    public static final double around = 180;
+
+    public static final double left = 90;
+
+    public static final double right = -90;
+
+    public static final boolean down = true;
+
+    public static final boolean up = false;
+
+    private Tuga tuga;
+
+    void setTuga(Tuga tuga) {
+        this.tuga = tuga;
+    }
+
+    public abstract void run();
+
+    /**
+     * @return the turtle itself, for anything the helpers don't cover
+     */
+    protected Tuga tuga() {
+        return tuga;
+    }
+
+    protected float[] color(float[] val) {
+        return tuga.color(val);
+    }
+
+    /**
+     * Sets a color by name, such as "red".
+     */
+    protected float[] color(String name) {
+        for (NamedColor color : Colors.COLORS) {
+            if (color.name.equals(name)) {
+                return tuga.color(color.rgb());
+            }
+        }
+        throw new RuntimeException("Unknown color " + name);
+    }
+
+    protected float[] color3(float red, float green, float blue) {
+        return tuga.color3(red, green, blue);
+    }
+
+    protected void jump(double distance) {
+        tuga.jump(distance);
+    }
+
+    protected void pen(boolean down) {
+        tuga.pen(down);
+    }
+
+    protected void spawn(TurtleProgram program) {
+        tuga.spawn(program);
+    }
+
+    protected void turn(double angle) {
+        tuga.turn(angle);
+    }
+
+    protected void turnWalk(double... pairs) {
+        tuga.turnWalk(pairs);
+    }
+
+    protected void walk(double distance) {
+        tuga.walk(distance);
+    }
+
+    protected void walkTo(double... points) {
+        tuga.walkTo(points);
+    }
+
+}
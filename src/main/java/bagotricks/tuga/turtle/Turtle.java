@@ -4,7 +4,21 @@ import java.awt.*;
 
 public class Turtle {
 
-	public double angle;
+	private static final double SQRT_HALF = Math.sqrt(0.5);
+
+	private static final double SQRT_THREE_HALVES = 0.5 * Math.sqrt(3);
+
+	/**
+	 * Heading in degrees, always in [0, 360).
+	 */
+	private double angle;
+
+	/**
+	 * Unit vector for the heading, only recomputed when the angle changes.
+	 */
+	private double directionX;
+
+	private double directionY;
 
 	public Color penColor;
 
@@ -18,12 +32,101 @@ public class Turtle {
 		reset();
 	}
 
+	public double getAngle() {
+		return angle;
+	}
+
+	public double getDirectionX() {
+		return directionX;
+	}
+
+	public double getDirectionY() {
+		return directionY;
+	}
+
+	public void setAngle(double angle) {
+		angle %= 360;
+		if (angle < 0) {
+			angle += 360;
+			if (angle == 360) {
+				// Tiny negative angles round up to a full turn.
+				angle = 0;
+			}
+		}
+		this.angle = angle;
+		updateDirection();
+	}
+
+	public void turn(double degrees) {
+		setAngle(angle + degrees);
+	}
+
+	/**
+	 * Copies the state of another turtle.
+	 */
+	public void set(Turtle other) {
+		angle = other.angle;
+		directionX = other.directionX;
+		directionY = other.directionY;
+		penColor = other.penColor;
+		penDown = other.penDown;
+		x = other.x;
+		y = other.y;
+	}
+
 	public void reset() {
-		angle = 90;
+		setAngle(90);
 		penColor = Color.BLACK;
 		penDown = true;
 		x = 0;
 		y = 0;
 	}
 
+	/**
+	 * Works on the angle within its quadrant so that multiples of 30 and 45
+	 * degrees give correctly rounded directions, and exact ones on the axes,
+	 * without calling cos and sin at all.
+	 */
+	private void updateDirection() {
+		int quadrant = (int) (angle / 90);
+		double reduced = angle - 90 * quadrant;
+		double cos;
+		double sin;
+		if (reduced == 0) {
+			cos = 1;
+			sin = 0;
+		} else if (reduced == 30) {
+			cos = SQRT_THREE_HALVES;
+			sin = 0.5;
+		} else if (reduced == 45) {
+			cos = SQRT_HALF;
+			sin = SQRT_HALF;
+		} else if (reduced == 60) {
+			cos = 0.5;
+			sin = SQRT_THREE_HALVES;
+		} else {
+			double radians = Math.toRadians(reduced);
+			cos = Math.cos(radians);
+			sin = Math.sin(radians);
+		}
+		switch (quadrant) {
+			case 0:
+				directionX = cos;
+				directionY = sin;
+				break;
+			case 1:
+				directionX = -sin;
+				directionY = cos;
+				break;
+			case 2:
+				directionX = -cos;
+				directionY = -sin;
+				break;
+			default:
+				directionX = sin;
+				directionY = -cos;
+				break;
+		}
+	}
+
 }
@@ -1,6 +1,8 @@
 package bagotricks.tuga.turtle;
 
 import bagotricks.tuga.Engine;
+import bagotricks.tuga.Library;
+import bagotricks.tuga.Pacer;
 import bagotricks.tuga.RunListener;
 import bagotricks.tuga.StopException;
 import bagotricks.tuga.Thrower;
@@ -9,124 +11,379 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.ImageCapabilities;
 import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
-import java.awt.image.VolatileImage;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
 
 public class TurtleEngine implements Engine, Tuga {
 
-    private final Turtle turtle;
+    /**
+     * How many steps a path may get ahead of what is shown. Keeps a program
+     * that never ends from filling memory while nobody watches.
+     */
+    static final int MAX_LEAD = 1 << 20;
+
+    /**
+     * How long to wait before looking again when running ahead or behind.
+     */
+    private static final long POLL_NANOS = 1000000;
 
     private final Drawing drawing;
 
     /**
-     * provides the ability to draw incrementally rather than redrawing the
-     * whole thing every time.
+     * The turtle the script starts with.
      */
-    private VolatileImage drawingBuffer;
+    private final TurtleHandle mainTurtle;
 
-    private int drawnStepCount;
+    /**
+     * Where the script's calls go: the main turtle, through a recorder while
+     * running a script.
+     */
+    private Tuga main;
+
+    private byte[] lastLog;
+
+    /**
+     * Logs of earlier runs to replay instead of running an unchanged
+     * program again, or null to always run.
+     */
+    private ResultCache resultCache;
+
+    /**
+     * All turtles, including spawned ones.
+     */
+    private final List<TurtleHandle> turtles;
+
+    private final List<Thread> turtleThreads;
+
+    private final List<Throwable> turtleFailures;
+
+    /**
+     * Keeps raster tiles of the drawing so painting only needs to draw what
+     * is new.
+     */
+    private final CanvasRenderer canvasRenderer;
+
+    private final ScrubRenderer scrubRenderer;
+
+    /**
+     * The step shown after seeking back, or -1 to show everything.
+     */
+    private int seekStep = -1;
 
     private RunListener listener;
 
-    private boolean paused;
+    private final Pacer pacer;
+
+    private volatile boolean paused;
+
+    private volatile boolean stopping;
 
-    private boolean stopNext;
+    /**
+     * How many steps of each path to show. While a run is played back, the
+     * script computes its steps ahead at full speed and this follows them at
+     * the pace of the pacer.
+     */
+    private volatile int visibleSteps = Integer.MAX_VALUE;
+
+    /**
+     * Animates the current run, or null if steps are shown as they come.
+     */
+    private volatile Playback playback;
 
-    private final ScriptRunner runner;
+    /**
+     * Warm runners for scripts, one per run, by language.
+     */
+    private final ScriptRunnerRegistry runners;
 
     public TurtleEngine() {
         this.drawing = new Drawing();
-        this.turtle = new Turtle();
-        runner = new RubyScriptRunner();
+        this.mainTurtle = new TurtleHandle(new Turtle(), drawing.lastPath());
+        this.main = mainTurtle;
+        this.turtles = new CopyOnWriteArrayList<>();
+        this.turtles.add(mainTurtle);
+        this.turtleThreads = new CopyOnWriteArrayList<>();
+        this.turtleFailures = new CopyOnWriteArrayList<>();
+        this.pacer = new Pacer();
+        this.canvasRenderer = new CanvasRenderer(CanvasRenderer.DEFAULT_TILE_BUDGET);
+        this.scrubRenderer = new ScrubRenderer(ScrubRenderer.DEFAULT_SNAPSHOT_BUDGET);
+        runners = new ScriptRunnerRegistry();
     }
 
     @Override
     public void init() {
-        runner.init(this);
+        runners.start(this);
+    }
+
+    @Override
+    public void dispose() {
+        runners.shutdown();
+    }
+
+    @Override
+    public Pacer getPacer() {
+        return pacer;
     }
 
     @Override
     public void execute(String name, String script) {
-        reset();
-        onStep();
+        execute(name, Library.DEFAULT_EXTENSION, script);
+    }
 
+    @Override
+    public void execute(String name, String extension, String script) {
+        ScriptRunnerPool pool = runners.getPool(extension);
+        String key = null;
+        if (resultCache != null && ResultCache.isCacheable(script)) {
+            key = ResultCache.key(pool.getLanguage(), script);
+            byte[] cached = resultCache.get(key);
+            if (cached != null) {
+                try {
+                    // Same program, same drawing, so just show it.
+                    replay(cached, false);
+                    lastLog = cached;
+                    return;
+                } catch (IOException e) {
+                    // Logged by an older version or damaged, so run it again.
+                    resultCache.remove(key);
+                }
+            }
+        }
+        ScriptRunner runner = pool.take(script);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        CommandRecorder recorder = new CommandRecorder(mainTurtle, log);
+        start(recorder, true);
+        boolean finished = false;
         try {
             runner.execute(name, script);
+            finished = true;
+        } finally {
+            try {
+                finish(finished);
+            } finally {
+                // Spawned turtles are done with it too by now.
+                pool.retire(runner);
+            }
+        }
+        recorder.flush();
+        lastLog = log.toByteArray();
+        if (key != null) {
+            resultCache.put(key, lastLog);
+        }
+    }
+
+    @Override
+    public void prepare(String extension, String script) {
+        if (runners.supports(extension)) {
+            runners.getPool(extension).prepare(script);
+        }
+    }
+
+    /**
+     * Draws the last run again from its command log, without the script.
+     */
+    @Override
+    public boolean replay() {
+        byte[] log = lastLog;
+        if (log == null) {
+            return false;
+        }
+        replay(log);
+        return true;
+    }
+
+    /**
+     * Draws from a log written by {@link CommandRecorder}, played back like a
+     * run.
+     */
+    public void replay(byte[] log) {
+        try {
+            replay(log, true);
+        } catch (IOException e) {
+            throw Thrower.throwAny(e);
+        }
+    }
+
+    private void replay(byte[] log, boolean paced) throws IOException {
+        start(mainTurtle, paced);
+        boolean finished = false;
+        try {
+            new CommandReplayer(new ByteArrayInputStream(log)).replay(mainTurtle);
+            finished = true;
         } finally {
+            finish(finished);
+        }
+    }
+
+    /**
+     * @return the commands of the last successful run, or null if none
+     */
+    public byte[] getLastLog() {
+        return lastLog;
+    }
+
+    /**
+     * @param animate whether to play the steps back at the pace of the pacer,
+     * rather than show them as soon as they are computed
+     */
+    private void start(Tuga main, boolean animate) {
+        reset();
+        this.main = main;
+        stopping = false;
+        pacer.start();
+        if (animate) {
+            visibleSteps = 1;
+            playback = new Playback();
+            playback.start();
+        }
+        onStep(1);
+    }
+
+    private void finish(boolean finished) {
+        try {
+            if (!finished) {
+                // Don't leave spawned turtles running on their own.
+                stopping = true;
+            }
+            awaitTurtles();
+            for (TurtleHandle handle : turtles) {
+                handle.path.timeline.finished(handle.turtle);
+            }
+            // Whatever got computed, even up to an error, still gets shown.
+            awaitPlayback();
+        } finally {
+            main = mainTurtle;
             paused = false;
-            stopNext = false;
+            stopping = false;
+            playback = null;
+            visibleSteps = Integer.MAX_VALUE;
+        }
+        if (!turtleFailures.isEmpty()) {
+            throw Thrower.throwAny(turtleFailures.get(0));
         }
     }
 
+    @Override
+    public void apply(double[] commands) {
+        main.apply(commands);
+    }
+
     @Override
     public float[] color(float[] val) {
-        if (val.length == 3) {
-            return color3(val[0], val[1], val[2]);
-        } else {
-            throw new RuntimeException("Expected array with length 3 but array had length " + val.length);
-        }
+        return main.color(val);
     }
 
     @Override
     public float[] color3(float red, float green, float blue) {
-        turtle.penColor = new Color(red / 100, green / 100, blue / 100);
-        return new float[]{red, green, blue};
+        return main.color3(red, green, blue);
     }
 
     @Override
     public void jump(double distance) {
-        move(distance, false);
+        main.jump(distance);
     }
 
     @Override
     public void pen(boolean down) {
-        turtle.penDown = down;
+        main.pen(down);
+    }
+
+    @Override
+    public void spawn(TurtleProgram program) {
+        main.spawn(program);
     }
 
     @Override
     public void turn(double angle) {
-        angle += turtle.angle;
-        // double turns = angle / 360;
-        // turns = turns < 0 ? Math.
-        // TODO Finish normalizing angle.
-        turtle.angle = angle;
-        onStep();
+        main.turn(angle);
+    }
+
+    @Override
+    public void turnWalk(double[] pairs) {
+        main.turnWalk(pairs);
     }
 
     @Override
     public void walk(double distance) {
-        move(distance, turtle.penDown);
+        main.walk(distance);
     }
 
-    private void move(double distance, boolean penDown) {
-        synchronized (this) {
-            turtle.x += distance * Math.cos(Math.toRadians(turtle.angle));
-            turtle.y += distance * Math.sin(Math.toRadians(turtle.angle));
-            drawing.lastPath().steps.add(new Step(turtle.x, turtle.y, penDown, turtle.penColor));
+    @Override
+    public void walkTo(double[] points) {
+        main.walkTo(points);
+    }
+
+    /**
+     * Called by turtles after each step, with the number of steps in their
+     * path. Pacing and pausing is up to the playback, if any, so this only
+     * holds a turtle back once it gets too far ahead of it.
+     */
+    private void onStep(int stepCount) {
+        if (stopping) {
+            throw new StopException();
+        }
+        Playback playback = this.playback;
+        if (playback == null) {
+            if (listener != null) {
+                listener.onStep();
+            }
+            return;
+        }
+        while (stepCount - visibleSteps > MAX_LEAD && playback.isAlive()) {
+            LockSupport.parkNanos(POLL_NANOS);
+            if (stopping) {
+                throw new StopException();
+            }
         }
-        onStep();
     }
 
-    private void onStep() {
-        synchronized (this) {
-            if (paused) {
+    /**
+     * @return the number of steps in the longest path
+     */
+    private int producedSteps() {
+        int count = 0;
+        for (Path path : drawing.paths) {
+            count = Math.max(count, path.steps.size());
+        }
+        return count;
+    }
+
+    private void awaitPlayback() {
+        Playback playback = this.playback;
+        if (playback == null) {
+            return;
+        }
+        playback.producing = false;
+        while (playback.isAlive()) {
+            try {
+                playback.join();
+            } catch (InterruptedException e) {
+                // Fine by me.
+            }
+        }
+    }
+
+    private void awaitTurtles() {
+        // Spawned turtles can spawn more, so the list can grow meanwhile.
+        for (int i = 0; i < turtleThreads.size(); i++) {
+            Thread thread = turtleThreads.get(i);
+            while (thread.isAlive()) {
                 try {
-                    wait();
+                    thread.join();
                 } catch (InterruptedException e) {
                     // Fine by me.
                 }
             }
-            if (stopNext) {
-                stopNext = false;
-                throw new StopException();
-            }
-        }
-        if (listener != null) {
-            listener.onStep();
         }
+        turtleThreads.clear();
     }
 
     @Override
@@ -135,78 +392,90 @@ public class TurtleEngine implements Engine, Tuga {
         try {
             int width = component.getWidth();
             int height = component.getHeight();
+            g.setColor(component.getBackground());
+            g.fillRect(0, 0, width, height);
+            // Turtles never take this lock to draw. It only keeps the renderer
+            // and the drawing from being reset under us.
             synchronized (this) {
-                do {
-                    initDrawingBuffer(component);
-                    Graphics2D bufferGraphics = drawingBuffer.createGraphics();
-                    try {
-                        initGraphics(bufferGraphics, width, height);
-                        // TODO I don't really support multiple paths, so lose this idea?
-                        for (Path path : drawing.paths) {
-                            bufferGraphics.setColor(path.color);
-                            bufferGraphics.setStroke(new BasicStroke((float) path.width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                            for (; drawnStepCount < path.steps.size(); drawnStepCount++) {
-                                Step lastStep = drawnStepCount > 0 ? path.steps.get(drawnStepCount - 1) : null;
-                                Step step = path.steps.get(drawnStepCount);
-                                if (lastStep != null && step.penDown) {
-                                    bufferGraphics.setColor(step.color);
-                                    bufferGraphics.draw(new Line2D.Double(lastStep.x, lastStep.y, step.x, step.y));
-                                }
-                            }
-                        }
-                    } finally {
-                        bufferGraphics.dispose();
-                    }
-                    g.drawImage(drawingBuffer, 0, 0, null);
-                } while (drawingBuffer.contentsLost());
-                initGraphics(g, width, height);
-                paintTurtle(g);
+                if (seekStep >= 0) {
+                    paintSeekStep(g, width, height);
+                    return;
+                }
+                int visible = visibleSteps;
+                canvasRenderer.paint(g, drawing, width, height, visible);
+                g.transform(canvasRenderer.getTransform());
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                for (TurtleHandle handle : turtles) {
+                    StepStore steps = handle.path.steps;
+                    paintTurtle(g, steps.size() > visible ? shownTurtle(handle.path, visible) : handle.turtle);
+                }
             }
         } finally {
             g.dispose();
         }
     }
 
-    private void initDrawingBuffer(Component component) {
-        try {
-            int status = VolatileImage.IMAGE_OK;
-            if (drawingBuffer == null || drawingBuffer.getWidth() != component.getWidth() || drawingBuffer.getHeight() != component.getHeight() || (status = drawingBuffer.validate(component.getGraphicsConfiguration())) != VolatileImage.IMAGE_OK) {
-                if (drawingBuffer != null && status == VolatileImage.IMAGE_OK) {
-                    // We think we have a good image, but it's not the right size.
-                    drawingBuffer.flush();
-                }
-                if (status != VolatileImage.IMAGE_RESTORED) {
-                    drawingBuffer = component.createVolatileImage(component.getWidth(), component.getHeight(), new ImageCapabilities(true));
-                }
-                // In any case, start the image over again.
-                drawnStepCount = 0;
-                Graphics2D bufferGraphics = drawingBuffer.createGraphics();
-                try {
-                    bufferGraphics.setColor(component.getBackground());
-                    bufferGraphics.fillRect(0, 0, component.getWidth(), component.getHeight());
-                } finally {
-                    bufferGraphics.dispose();
-                }
-            }
-        } catch (Exception e) {
-            Thrower.throwAny(e);
+    private void paintSeekStep(Graphics2D g, int width, int height) {
+        // Panning and zooming still go through the live view.
+        canvasRenderer.update(drawing, width, height);
+        AffineTransform transform = canvasRenderer.getTransform();
+        scrubRenderer.paint(g, drawing.paths, transform, width, height, seekStep);
+        g.transform(transform);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Turtle turtle = new Turtle();
+        for (Path path : drawing.paths) {
+            path.timeline.stateAt(path.steps, seekStep, turtle);
+            paintTurtle(g, turtle);
         }
     }
 
-    private void initGraphics(Graphics2D g, int width, int height) {
-        g.translate(0.5 * width, 0.5 * height);
-        double base = Math.min(width, height);
-        g.scale(base / 1850, base / -1850);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    /**
+     * Finds where a turtle that is ahead of the playback was at the last step
+     * shown, heading the way it got there. Unlike seeking, this doesn't look
+     * at the steps it is ahead by, which aren't shown yet.
+     */
+    private static Turtle shownTurtle(Path path, int visible) {
+        Turtle turtle = new Turtle();
+        path.timeline.arrivedAt(path.steps, visible - 1, turtle);
+        return turtle;
     }
 
-    private void paintTurtle(Graphics2D g) {
+    @Override
+    public synchronized int getStepCount() {
+        int count = 0;
+        for (Path path : drawing.paths) {
+            count = Math.max(count, path.steps.size() - 1);
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void seek(int step) {
+        seekStep = step < getStepCount() ? Math.max(0, step) : -1;
+    }
+
+    @Override
+    public synchronized void panView(int dx, int dy) {
+        canvasRenderer.pan(dx, dy);
+    }
+
+    @Override
+    public synchronized void zoomView(double factor, int x, int y) {
+        canvasRenderer.zoom(factor, x, y);
+    }
+
+    @Override
+    public synchronized void fitView() {
+        canvasRenderer.fit();
+    }
+
+    private void paintTurtle(Graphics2D g, Turtle turtle) {
         g = (Graphics2D) g.create();
         try {
             g.setColor(new Color(0, 128, 0));
             g.setStroke(new BasicStroke(9));
             g.translate(turtle.x, turtle.y);
-            g.rotate(Math.toRadians(turtle.angle));
+            g.rotate(Math.toRadians(turtle.getAngle()));
             g.translate(8, 0); // The turtle is a bit offset.
             GeneralPath path = new GeneralPath();
             path.moveTo(-20, -15);
@@ -224,12 +493,16 @@ public class TurtleEngine implements Engine, Tuga {
     @Override
     public void reset() {
         synchronized (this) {
-            if (drawingBuffer != null) {
-                drawingBuffer.flush();
-            }
-            drawingBuffer = null;
-            turtle.reset();
+            canvasRenderer.clear();
+            scrubRenderer.clear();
+            seekStep = -1;
+            visibleSteps = Integer.MAX_VALUE;
             drawing.reset();
+            mainTurtle.turtle.reset();
+            mainTurtle.path = drawing.lastPath();
+            turtles.clear();
+            turtles.add(mainTurtle);
+            turtleFailures.clear();
         }
     }
 
@@ -239,30 +512,299 @@ public class TurtleEngine implements Engine, Tuga {
     }
 
     /**
-     * Stops the next thread that calls onStep.
+     * Stops all turtle threads the next time they call onStep, and the
+     * playback.
      */
     @Override
     public void stop() {
         synchronized (this) {
-            stopNext = true;
+            stopping = true;
             paused = false;
-            notify();
+            Playback playback = this.playback;
+            if (playback != null) {
+                playback.stopped = true;
+            }
+            notifyAll();
+        }
+        pacer.release();
+    }
+
+    /**
+     * Shows steps as soon as they are computed for the rest of the run,
+     * starting with everything computed so far.
+     */
+    @Override
+    public void skipToEnd() {
+        synchronized (this) {
+            Playback playback = this.playback;
+            if (playback != null) {
+                playback.skipping = true;
+            }
+            notifyAll();
         }
+        pacer.release();
     }
 
     @Override
     public synchronized boolean togglePause() {
         if (paused) {
             paused = false;
-            notify();
+            notifyAll();
         } else {
             paused = true;
         }
         return paused;
     }
 
+    /**
+     * Keeps steps in memory mapped files in a directory of this process's own
+     * within the given one, or on the heap if null, starting with the next
+     * run. Step files left there by earlier processes are deleted.
+     */
+    public void setStepLogDirectory(File directory) throws IOException {
+        File own = directory != null ? MappedStepStore.createDirectory(directory) : null;
+        synchronized (this) {
+            drawing.stepLogDirectory = own;
+        }
+    }
+
+    /**
+     * Saves a snapshot of the drawing, see {@link DrawingWriter}.
+     */
+    public void save(File file) throws IOException {
+        synchronized (this) {
+            DrawingWriter.write(drawing, file);
+        }
+    }
+
+    /**
+     * Replaces the drawing with one saved earlier. The main turtle waits at
+     * the end of the first path, and there's no last run to replay.
+     */
+    public void load(File file) throws IOException {
+        synchronized (this) {
+            reset();
+            DrawingReader.read(drawing, file);
+            Path path = drawing.paths.get(0);
+            // Headed the way it got there, since only steps were saved.
+            path.timeline.stateAt(path.steps, path.steps.size() - 1, mainTurtle.turtle);
+            mainTurtle.path = path;
+            lastLog = null;
+        }
+    }
+
+    /**
+     * Renders the current drawing without needing a component or display.
+     */
+    public BufferedImage renderImage(int width, int height) {
+        synchronized (this) {
+            return DrawingRenderer.render(drawing, width, height);
+        }
+    }
+
+    /**
+     * Replays runs of unchanged programs from the given cache, for programs
+     * that only draw, or always runs the script if null.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     public Drawing getDrawing() {
         return drawing;
     }
 
+    /**
+     * One turtle and the path it draws. Each turtle is the only writer of its
+     * own path, so moving takes no lock at all, and painting reads the steps
+     * as they are published.
+     */
+    private class TurtleHandle implements Tuga {
+
+        private final Turtle turtle;
+
+        private Path path;
+
+        TurtleHandle(Turtle turtle, Path path) {
+            this.turtle = turtle;
+            this.path = path;
+        }
+
+        @Override
+        public void apply(double[] commands) {
+            TugaCommands.apply(this, commands);
+        }
+
+        @Override
+        public float[] color(float[] val) {
+            if (val.length == 3) {
+                return color3(val[0], val[1], val[2]);
+            } else {
+                throw new RuntimeException("Expected array with length 3 but array had length " + val.length);
+            }
+        }
+
+        @Override
+        public float[] color3(float red, float green, float blue) {
+            turtle.penColor = new Color(red / 100, green / 100, blue / 100);
+            return new float[]{red, green, blue};
+        }
+
+        @Override
+        public void jump(double distance) {
+            move(distance, false);
+        }
+
+        @Override
+        public void pen(boolean down) {
+            turtle.penDown = down;
+        }
+
+        @Override
+        public void spawn(final TurtleProgram program) {
+            Turtle child = new Turtle();
+            child.set(turtle);
+            Path childPath = drawing.newPath(child.x, child.y);
+            final TurtleHandle handle = new TurtleHandle(child, childPath);
+            drawing.paths.add(childPath);
+            turtles.add(handle);
+            Thread thread = new Thread("Turtle " + turtles.size()) {
+                @Override
+                public void run() {
+                    try {
+                        program.run(handle);
+                    } catch (StopException e) {
+                        // Requested. Just quit.
+                    } catch (Throwable e) {
+                        turtleFailures.add(e);
+                        // One failure ends the whole program.
+                        stopping = true;
+                        pacer.release();
+                    }
+                }
+            };
+            turtleThreads.add(thread);
+            thread.start();
+        }
+
+        @Override
+        public void turn(double angle) {
+            turtle.turn(angle);
+            onStep(path.steps.size());
+        }
+
+        @Override
+        public void turnWalk(double[] pairs) {
+            checkPairs(pairs);
+            for (int i = 0; i < pairs.length; i += 2) {
+                turn(pairs[i]);
+                walk(pairs[i + 1]);
+            }
+        }
+
+        @Override
+        public void walk(double distance) {
+            move(distance, turtle.penDown);
+        }
+
+        @Override
+        public void walkTo(double[] points) {
+            checkPairs(points);
+            for (int i = 0; i < points.length; i += 2) {
+                double x = points[i];
+                double y = points[i + 1];
+                if (x != turtle.x || y != turtle.y) {
+                    turtle.setAngle(Math.toDegrees(Math.atan2(y - turtle.y, x - turtle.x)));
+                }
+                moveTo(x, y, turtle.penDown);
+            }
+        }
+
+        private void move(double distance, boolean penDown) {
+            moveTo(turtle.x + distance * turtle.getDirectionX(), turtle.y + distance * turtle.getDirectionY(), penDown);
+        }
+
+        private void moveTo(double x, double y, boolean penDown) {
+            turtle.x = x;
+            turtle.y = y;
+            path.steps.add(x, y, penDown, turtle.penColor);
+            path.timeline.stepped(path.steps, turtle);
+            onStep(path.steps.size());
+        }
+
+        private void checkPairs(double[] values) {
+            if (values.length % 2 != 0) {
+                throw new RuntimeException("Expected pairs but array had length " + values.length);
+            }
+        }
+
+    }
+
+    /**
+     * Plays back the steps of a run while the script computes them, showing
+     * one more step of every path for each step of the pacer. Pausing a run
+     * pauses this, and the script soon waits too, once it is too far ahead.
+     */
+    private class Playback extends Thread {
+
+        /**
+         * Cleared once all turtles are done, so the playback can finish.
+         */
+        volatile boolean producing = true;
+
+        volatile boolean stopped;
+
+        volatile boolean skipping;
+
+        Playback() {
+            super("Playback");
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                // Check for the end first, so no last steps get missed.
+                boolean more = producing;
+                int available = producedSteps();
+                int visible = visibleSteps;
+                if (visible >= available) {
+                    if (!more) {
+                        break;
+                    }
+                    LockSupport.parkNanos(POLL_NANOS);
+                    continue;
+                }
+                if (paused && !skipping) {
+                    awaitResume();
+                    continue;
+                }
+                boolean showAll = skipping || pacer.isInstant();
+                visibleSteps = showAll ? available : visible + 1;
+                if (listener != null) {
+                    listener.onStep();
+                }
+                if (!skipping) {
+                    try {
+                        pacer.step();
+                    } catch (InterruptedException e) {
+                        // Fine by me.
+                    }
+                }
+            }
+        }
+
+        private void awaitResume() {
+            synchronized (TurtleEngine.this) {
+                while (paused && !stopped && !skipping) {
+                    try {
+                        TurtleEngine.this.wait();
+                    } catch (InterruptedException e) {
+                        // Fine by me.
+                    }
+                }
+            }
+        }
+
+    }
+
 }
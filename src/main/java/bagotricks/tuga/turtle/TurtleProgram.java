@@ -0,0 +1,11 @@
+package bagotricks.tuga.turtle;
+
+/**
+ * Code to run for a turtle spawned with {@link Tuga#spawn}. Scripts pass a
+ * Ruby block or a Python function.
+ */
+public interface TurtleProgram {
+
+    void run(Tuga turtle);
+
+}
@@ -0,0 +1,423 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Writes the vector form of a drawing as SVG or PDF. The steps are walked
+ * once and streamed straight to the output, with each run of consecutive pen
+ * down steps of one color becoming a single path, so memory use does not
+ * depend on the size of the drawing.
+ */
+public class VectorExporter {
+
+    /**
+     * Width and height of the PDF page in points.
+     */
+    public static final double DEFAULT_PAGE_SIZE = 540;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    public static void writeSvg(Drawing drawing, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            writeSvg(drawing, out);
+        }
+    }
+
+    public static void writeSvg(Drawing drawing, OutputStream out) throws IOException {
+        writeSvg(drawing, out, 0);
+    }
+
+    /**
+     * @param tolerance how far, in world units, the output may stray from
+     * the steps to save points, or 0 for an exact copy
+     */
+    public static void writeSvg(Drawing drawing, OutputStream out, double tolerance) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
+        walk(drawing, simplify(new SvgRuns(writer), tolerance));
+        writer.flush();
+    }
+
+    public static void writePdf(Drawing drawing, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            writePdf(drawing, out, DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    public static void writePdf(Drawing drawing, OutputStream out, double pageSize) throws IOException {
+        writePdf(drawing, out, pageSize, 0);
+    }
+
+    /**
+     * @param tolerance how far, in world units, the output may stray from
+     * the steps to save points, or 0 for an exact copy
+     */
+    public static void writePdf(Drawing drawing, OutputStream out, double pageSize, double tolerance) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(out));
+        Writer writer = new OutputStreamWriter(counter, ASCII);
+        walk(drawing, simplify(new PdfRuns(writer, counter, pageSize), tolerance));
+        writer.flush();
+    }
+
+    private static Runs simplify(Runs runs, double tolerance) {
+        return tolerance > 0 ? new SimplifyingRuns(runs, tolerance) : runs;
+    }
+
+    private static void walk(Drawing drawing, Runs runs) throws IOException {
+        runs.begin();
+        List<Path> paths = drawing.paths;
+        // Turtles may still be drawing, so each path is read from a snapshot.
+        StepCursor end = new StepCursor();
+        double[] point = new double[2];
+        for (Path path : paths) {
+            StepStore steps = path.steps;
+            end.read(steps);
+            boolean open = false;
+            int runColor = -1;
+            for (int i = 1; i < end.count; i++) {
+                if (!steps.penDown(i)) {
+                    if (open) {
+                        runs.endRun();
+                        open = false;
+                    }
+                    continue;
+                }
+                int color = steps.colorIndex(i);
+                if (open && color != runColor) {
+                    runs.endRun();
+                    open = false;
+                }
+                if (!open) {
+                    runs.beginRun(steps.paletteColor(color), path.width);
+                    end.point(steps, i - 1, point);
+                    runs.point(point[0], point[1], true);
+                    runColor = color;
+                    open = true;
+                }
+                end.point(steps, i, point);
+                runs.point(point[0], point[1], false);
+            }
+            if (open) {
+                runs.endRun();
+            }
+        }
+        runs.end();
+    }
+
+    /**
+     * Appends a number with at most two decimals and no exponent.
+     */
+    static void appendNumber(Writer writer, double value) throws IOException {
+        appendNumber(writer, value, 2);
+    }
+
+    static void appendNumber(Writer writer, double value, int decimals) throws IOException {
+        long unit = 1;
+        for (int i = 0; i < decimals; i++) {
+            unit *= 10;
+        }
+        long scaled = Math.round(value * unit);
+        if (scaled < 0) {
+            writer.write('-');
+            scaled = -scaled;
+        }
+        writer.write(Long.toString(scaled / unit));
+        long fraction = scaled % unit;
+        if (fraction != 0) {
+            writer.write('.');
+            for (long digit = unit / 10; fraction != 0; digit /= 10) {
+                writer.write((char) ('0' + fraction / digit));
+                fraction %= digit;
+            }
+        }
+    }
+
+    /**
+     * Receives the runs of a drawing in order.
+     */
+    private interface Runs {
+
+        void begin() throws IOException;
+
+        void beginRun(Color color, double width) throws IOException;
+
+        void point(double x, double y, boolean first) throws IOException;
+
+        void endRun() throws IOException;
+
+        void end() throws IOException;
+
+    }
+
+    /**
+     * Drops points that stay within the tolerance of the line through the
+     * last point kept, heading toward the point after it (Reumann-Witkam).
+     * Works as the points stream by, holding only the last point seen.
+     */
+    private static class SimplifyingRuns implements Runs {
+
+        private final Runs target;
+
+        private final double tolerance;
+
+        private double anchorX;
+
+        private double anchorY;
+
+        private double directionX;
+
+        private double directionY;
+
+        private boolean hasDirection;
+
+        private double progress;
+
+        private boolean pending;
+
+        private double pendingX;
+
+        private double pendingY;
+
+        SimplifyingRuns(Runs target, double tolerance) {
+            this.target = target;
+            this.tolerance = tolerance;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            target.begin();
+        }
+
+        @Override
+        public void beginRun(Color color, double width) throws IOException {
+            target.beginRun(color, width);
+        }
+
+        @Override
+        public void point(double x, double y, boolean first) throws IOException {
+            if (first) {
+                target.point(x, y, true);
+                startLine(x, y);
+                return;
+            }
+            if (hasDirection) {
+                double dx = x - anchorX;
+                double dy = y - anchorY;
+                double along = dx * directionX + dy * directionY;
+                double across = Math.abs(dx * directionY - dy * directionX);
+                if (across <= tolerance && along >= progress) {
+                    progress = along;
+                    setPending(x, y);
+                    return;
+                }
+                // Leaving the strip, so the last point seen must be kept.
+                target.point(pendingX, pendingY, false);
+                startLine(pendingX, pendingY);
+            }
+            double dx = x - anchorX;
+            double dy = y - anchorY;
+            double length = Math.sqrt(dx * dx + dy * dy);
+            if (length > 0) {
+                directionX = dx / length;
+                directionY = dy / length;
+                progress = length;
+                hasDirection = true;
+            }
+            setPending(x, y);
+        }
+
+        @Override
+        public void endRun() throws IOException {
+            if (pending) {
+                target.point(pendingX, pendingY, false);
+            }
+            target.endRun();
+        }
+
+        @Override
+        public void end() throws IOException {
+            target.end();
+        }
+
+        private void startLine(double x, double y) {
+            anchorX = x;
+            anchorY = y;
+            hasDirection = false;
+            pending = false;
+        }
+
+        private void setPending(double x, double y) {
+            pendingX = x;
+            pendingY = y;
+            pending = true;
+        }
+
+    }
+
+    private static class SvgRuns implements Runs {
+
+        private final Writer writer;
+
+        SvgRuns(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            double half = 0.5 * DrawingRenderer.WORLD_SIZE;
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"");
+            appendNumber(writer, -half);
+            writer.write(' ');
+            appendNumber(writer, -half);
+            writer.write(' ');
+            appendNumber(writer, DrawingRenderer.WORLD_SIZE);
+            writer.write(' ');
+            appendNumber(writer, DrawingRenderer.WORLD_SIZE);
+            writer.write("\">\n");
+            // Turtle y goes up.
+            writer.write("<g transform=\"scale(1,-1)\" fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\">\n");
+        }
+
+        @Override
+        public void beginRun(Color color, double width) throws IOException {
+            writer.write("<path stroke=\"#");
+            writer.write(String.format("%06x", color.getRGB() & 0xffffff));
+            writer.write("\" stroke-width=\"");
+            appendNumber(writer, width);
+            writer.write("\" d=\"");
+        }
+
+        @Override
+        public void point(double x, double y, boolean first) throws IOException {
+            writer.write(first ? "M" : " L");
+            appendNumber(writer, x);
+            writer.write(' ');
+            appendNumber(writer, y);
+        }
+
+        @Override
+        public void endRun() throws IOException {
+            writer.write("\"/>\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.write("</g>\n</svg>\n");
+        }
+
+    }
+
+    /**
+     * Writes a single page PDF. The content stream goes out as it is
+     * produced and its length is written afterwards as an indirect object.
+     */
+    private static class PdfRuns implements Runs {
+
+        private final Writer writer;
+
+        private final CountingOutputStream counter;
+
+        private final double pageSize;
+
+        private final long[] offsets;
+
+        private long streamStart;
+
+        PdfRuns(Writer writer, CountingOutputStream counter, double pageSize) {
+            this.writer = writer;
+            this.counter = counter;
+            this.pageSize = pageSize;
+            offsets = new long[6];
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write("%PDF-1.4\n");
+            startObject(1);
+            writer.write("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+            startObject(2);
+            writer.write("<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+            startObject(3);
+            writer.write("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 ");
+            appendNumber(writer, pageSize);
+            writer.write(' ');
+            appendNumber(writer, pageSize);
+            writer.write("] /Contents 4 0 R /Resources << >> >>\nendobj\n");
+            startObject(4);
+            writer.write("<< /Length 5 0 R >>\nstream\n");
+            writer.flush();
+            streamStart = counter.count;
+            // Center the world square on the page. PDF y goes up like ours.
+            double scale = pageSize / DrawingRenderer.WORLD_SIZE;
+            appendNumber(writer, scale, 6);
+            writer.write(" 0 0 ");
+            appendNumber(writer, scale, 6);
+            writer.write(' ');
+            appendNumber(writer, 0.5 * pageSize);
+            writer.write(' ');
+            appendNumber(writer, 0.5 * pageSize);
+            writer.write(" cm 1 J 1 j\n");
+        }
+
+        @Override
+        public void beginRun(Color color, double width) throws IOException {
+            float[] rgb = color.getRGBColorComponents(null);
+            for (float component : rgb) {
+                appendNumber(writer, component, 3);
+                writer.write(' ');
+            }
+            writer.write("RG ");
+            appendNumber(writer, width);
+            writer.write(" w\n");
+        }
+
+        @Override
+        public void point(double x, double y, boolean first) throws IOException {
+            appendNumber(writer, x);
+            writer.write(' ');
+            appendNumber(writer, y);
+            writer.write(first ? " m\n" : " l\n");
+        }
+
+        @Override
+        public void endRun() throws IOException {
+            writer.write("S\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+            // The content always ends with a newline, which doubles as the
+            // end of line before endstream and is not part of the length.
+            long length = counter.count - streamStart - 1;
+            writer.write("endstream\nendobj\n");
+            startObject(5);
+            writer.write(length + "\nendobj\n");
+            writer.flush();
+            long xref = counter.count;
+            writer.write("xref\n0 6\n0000000000 65535 f\r\n");
+            for (int i = 1; i < offsets.length; i++) {
+                writer.write(String.format("%010d 00000 n\r\n", offsets[i]));
+            }
+            writer.write("trailer\n<< /Size 6 /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+        }
+
+        private void startObject(int number) throws IOException {
+            writer.flush();
+            offsets[number] = counter.count;
+            writer.write(number + " 0 obj\n");
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The part of the world shown on the canvas. At zoom 1 the world square of
+ * {@link DrawingRenderer#WORLD_SIZE} fits the smaller side of the canvas, as
+ * it always did before the view could change.
+ */
+public class Viewport {
+
+    private static final double MIN_ZOOM = 1.0 / 64;
+
+    private static final double MAX_ZOOM = 4096;
+
+    /**
+     * Leaves some room around the drawing when fitting to its bounds.
+     */
+    private static final double FIT_MARGIN = 0.9;
+
+    private double centerX;
+
+    private double centerY;
+
+    private double zoom;
+
+    public Viewport() {
+        reset();
+    }
+
+    public final void reset() {
+        centerX = 0;
+        centerY = 0;
+        zoom = 1;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * @return pixels per world unit
+     */
+    public double scale(int width, int height) {
+        return zoom * Math.min(width, height) / DrawingRenderer.WORLD_SIZE;
+    }
+
+    /**
+     * @return the device x of the world origin, rounded so that raster tiles
+     * line up with device pixels
+     */
+    public int originX(int width, int height) {
+        return (int) Math.round(0.5 * width - centerX * scale(width, height));
+    }
+
+    public int originY(int width, int height) {
+        return (int) Math.round(0.5 * height + centerY * scale(width, height));
+    }
+
+    public AffineTransform transform(int width, int height) {
+        double scale = scale(width, height);
+        AffineTransform transform = AffineTransform.getTranslateInstance(originX(width, height), originY(width, height));
+        transform.scale(scale, -scale);
+        return transform;
+    }
+
+    /**
+     * Moves the view by a distance in pixels.
+     */
+    public void pan(int dx, int dy, int width, int height) {
+        double scale = scale(width, height);
+        centerX -= dx / scale;
+        centerY += dy / scale;
+    }
+
+    /**
+     * Zooms by a factor while keeping the world point under the given pixel
+     * in place.
+     */
+    public void zoom(double factor, int x, int y, int width, int height) {
+        double scale = scale(width, height);
+        double worldX = (x - originX(width, height)) / scale;
+        double worldY = -(y - originY(width, height)) / scale;
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        scale = scale(width, height);
+        centerX = worldX - (x - 0.5 * width) / scale;
+        centerY = worldY + (y - 0.5 * height) / scale;
+    }
+
+    /**
+     * Centers on the bounds and zooms to fit them, or resets for no bounds.
+     */
+    public void fit(Rectangle2D bounds, int width, int height) {
+        reset();
+        if (bounds == null || width <= 0 || height <= 0) {
+            return;
+        }
+        centerX = bounds.getCenterX();
+        centerY = bounds.getCenterY();
+        double fitScale = FIT_MARGIN * Math.min(width / Math.max(bounds.getWidth(), 1), height / Math.max(bounds.getHeight(), 1));
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, fitScale / scale(width, height)));
+    }
+
+}
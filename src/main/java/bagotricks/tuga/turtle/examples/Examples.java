@@ -9,7 +9,7 @@ import bagotricks.tuga.ProgramGroup;
 
 public class Examples {
 
-    private static final String[] NAMES = {"Angle Patterns", "Basic Square", "Dashed Line", "House", "Spiral", "Square Function", "Wanderer", "Wanderer Plus",};
+    private static final String[] NAMES = {"Angle Patterns", "Basic Square", "Dashed Line", "House", "Spiral", "Square Function", "Swarm", "Wanderer", "Wanderer Plus",};
 
     private static final List<Program> PROGRAMS = buildPrograms();
 
@@ -0,0 +1,17 @@
+package bagotricks.tuga.turtle.logo;
+
+/**
+ * A mistake in a Logo program, found when parsing or running it.
+ */
+public class LogoException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int line;
+
+    public LogoException(String message, int line) {
+        super(message);
+        this.line = line;
+    }
+
+}
@@ -0,0 +1,422 @@
+package bagotricks.tuga.turtle.logo;
+
+import bagotricks.tuga.turtle.Colors;
+import bagotricks.tuga.turtle.NamedColor;
+import bagotricks.tuga.turtle.logo.LogoProgram.Expression;
+import bagotricks.tuga.turtle.logo.LogoProgram.Procedure;
+import bagotricks.tuga.turtle.logo.LogoProgram.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns Logo text into a {@link LogoProgram}. Procedures are found before
+ * anything else is parsed, so they can be called before they're defined and
+ * the number of inputs of every call is known.
+ *
+ * The language is a small Logo: forward, back, left, right, penup, pendown,
+ * jump, setcolor, repeat with repcount, if, ifelse, make with :variables,
+ * to ... end with output and stop, arithmetic and comparisons, and a few
+ * functions such as random and sqrt. Names aren't case sensitive and
+ * comments start with ';'.
+ */
+public class LogoParser {
+
+    private enum Kind {
+        WORD, NUMBER, QUOTED, VARIABLE, OPERATOR, OPEN_BRACKET, CLOSE_BRACKET, OPEN_PAREN, CLOSE_PAREN, END
+    }
+
+    private static class Token {
+
+        final Kind kind;
+
+        final String text;
+
+        final int line;
+
+        Token(Kind kind, String text, int line) {
+            this.kind = kind;
+            this.text = text;
+            this.line = line;
+        }
+
+        boolean is(Kind kind, String text) {
+            return this.kind == kind && this.text.equals(text);
+        }
+
+    }
+
+    private static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList(
+            "forward", "fd", "back", "bk", "left", "lt", "right", "rt", "penup", "pu", "pendown", "pd", "jump",
+            "setcolor", "repeat", "repcount", "if", "ifelse", "make", "to", "end", "output", "op", "stop"));
+
+    public static LogoProgram parse(String text) {
+        return new LogoParser(tokenize(text)).parseProgram();
+    }
+
+    private final List<Token> tokens;
+
+    private int position;
+
+    private final Map<String, Procedure> procedures;
+
+    private final Map<String, Integer> globals;
+
+    /**
+     * Parameters of the procedure being parsed, or null at the top.
+     */
+    private List<String> parameters;
+
+    private LogoParser(List<Token> tokens) {
+        this.tokens = tokens;
+        procedures = new HashMap<>();
+        globals = new HashMap<>();
+    }
+
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int line = 1;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '[') {
+                tokens.add(new Token(Kind.OPEN_BRACKET, "[", line));
+                i++;
+            } else if (c == ']') {
+                tokens.add(new Token(Kind.CLOSE_BRACKET, "]", line));
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(Kind.OPEN_PAREN, "(", line));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(Kind.CLOSE_PAREN, ")", line));
+                i++;
+            } else if (c == '<' || c == '>') {
+                String operator = String.valueOf(c);
+                if (i + 1 < text.length() && (text.charAt(i + 1) == '=' || (c == '<' && text.charAt(i + 1) == '>'))) {
+                    operator += text.charAt(i + 1);
+                }
+                tokens.add(new Token(Kind.OPERATOR, operator, line));
+                i += operator.length();
+            } else if ("+-*/=".indexOf(c) >= 0) {
+                tokens.add(new Token(Kind.OPERATOR, String.valueOf(c), line));
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < text.length() && Character.isDigit(text.charAt(i + 1)))) {
+                int start = i;
+                while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.NUMBER, text.substring(start, i), line));
+            } else if (c == '"' || c == ':') {
+                int start = ++i;
+                i = wordEnd(text, i);
+                if (i == start) {
+                    throw new LogoException("Expected a name after " + c, line);
+                }
+                tokens.add(new Token(c == '"' ? Kind.QUOTED : Kind.VARIABLE, text.substring(start, i).toLowerCase(), line));
+            } else if (isWordChar(c)) {
+                int start = i;
+                i = wordEnd(text, i);
+                tokens.add(new Token(Kind.WORD, text.substring(start, i).toLowerCase(), line));
+            } else {
+                throw new LogoException("Unexpected " + c, line);
+            }
+        }
+        tokens.add(new Token(Kind.END, "end of program", line));
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '?';
+    }
+
+    private static int wordEnd(String text, int i) {
+        while (i < text.length() && isWordChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private LogoProgram parseProgram() {
+        findProcedures();
+        List<Statement> statements = new ArrayList<>();
+        while (peek().kind != Kind.END) {
+            if (peek().is(Kind.WORD, "to")) {
+                parseProcedure();
+            } else {
+                statements.add(parseStatement());
+            }
+        }
+        return new LogoProgram(statements.toArray(new Statement[statements.size()]), globals.size());
+    }
+
+    private void findProcedures() {
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            if (tokens.get(i).is(Kind.WORD, "to")) {
+                Token name = tokens.get(i + 1);
+                if (name.kind != Kind.WORD) {
+                    throw new LogoException("Expected a procedure name after to", name.line);
+                }
+                if (PRIMITIVES.contains(name.text) || isFunction(name.text)) {
+                    throw new LogoException(name.text + " is already built in", name.line);
+                }
+                if (procedures.containsKey(name.text)) {
+                    throw new LogoException(name.text + " is already defined", name.line);
+                }
+                int count = 0;
+                while (tokens.get(i + 2 + count).kind == Kind.VARIABLE) {
+                    count++;
+                }
+                procedures.put(name.text, new Procedure(name.text, count));
+            }
+        }
+    }
+
+    private void parseProcedure() {
+        Token to = next();
+        if (parameters != null) {
+            throw new LogoException("Can't define a procedure inside another", to.line);
+        }
+        Procedure procedure = procedures.get(next().text);
+        parameters = new ArrayList<>();
+        while (peek().kind == Kind.VARIABLE) {
+            parameters.add(next().text);
+        }
+        List<Statement> body = new ArrayList<>();
+        while (!peek().is(Kind.WORD, "end")) {
+            if (peek().kind == Kind.END) {
+                throw new LogoException("Missing end for " + procedure.name, to.line);
+            }
+            body.add(parseStatement());
+        }
+        next();
+        procedure.body = body.toArray(new Statement[body.size()]);
+        parameters = null;
+    }
+
+    private Statement[] parseBlock() {
+        Token open = next();
+        if (open.kind != Kind.OPEN_BRACKET) {
+            throw new LogoException("Expected [ but found " + open.text, open.line);
+        }
+        List<Statement> statements = new ArrayList<>();
+        while (peek().kind != Kind.CLOSE_BRACKET) {
+            if (peek().kind == Kind.END) {
+                throw new LogoException("Missing ]", open.line);
+            }
+            statements.add(parseStatement());
+        }
+        next();
+        return statements.toArray(new Statement[statements.size()]);
+    }
+
+    private Statement parseStatement() {
+        Token token = next();
+        int line = token.line;
+        if (token.kind != Kind.WORD) {
+            throw new LogoException("Expected a command but found " + token.text, line);
+        }
+        switch (token.text) {
+            case "forward":
+            case "fd":
+                return new LogoProgram.Walk(line, parseExpression(), 1);
+            case "back":
+            case "bk":
+                return new LogoProgram.Walk(line, parseExpression(), -1);
+            case "left":
+            case "lt":
+                return new LogoProgram.Turn(line, parseExpression(), 1);
+            case "right":
+            case "rt":
+                return new LogoProgram.Turn(line, parseExpression(), -1);
+            case "penup":
+            case "pu":
+                return new LogoProgram.Pen(line, false);
+            case "pendown":
+            case "pd":
+                return new LogoProgram.Pen(line, true);
+            case "jump":
+                return new LogoProgram.Jump(line, parseExpression());
+            case "setcolor":
+                return parseSetColor(line);
+            case "repeat":
+                return new LogoProgram.Repeat(line, parseExpression(), parseBlock());
+            case "if":
+                return new LogoProgram.If(line, parseExpression(), parseBlock(), null);
+            case "ifelse":
+                return new LogoProgram.If(line, parseExpression(), parseBlock(), parseBlock());
+            case "make":
+                return parseMake(line);
+            case "output":
+            case "op":
+                checkInProcedure(token);
+                return new LogoProgram.Output(line, parseExpression());
+            case "stop":
+                checkInProcedure(token);
+                return new LogoProgram.Stop(line);
+            case "to":
+                throw new LogoException("Can't define a procedure inside another", line);
+            default:
+                Procedure procedure = procedures.get(token.text);
+                if (procedure == null) {
+                    throw new LogoException("I don't know how to " + token.text, line);
+                }
+                return new LogoProgram.Call(line, procedure, parseArguments(procedure));
+        }
+    }
+
+    private void checkInProcedure(Token token) {
+        if (parameters == null) {
+            throw new LogoException(token.text + " is only for procedures", token.line);
+        }
+    }
+
+    private Statement parseSetColor(int line) {
+        if (peek().kind == Kind.QUOTED) {
+            Token name = next();
+            for (NamedColor color : Colors.COLORS) {
+                if (color.name.equals(name.text)) {
+                    return new LogoProgram.SetColor(line, new LogoProgram.Number(line, color.r), new LogoProgram.Number(line, color.g), new LogoProgram.Number(line, color.b));
+                }
+            }
+            throw new LogoException("Unknown color " + name.text, line);
+        }
+        return new LogoProgram.SetColor(line, parseExpression(), parseExpression(), parseExpression());
+    }
+
+    private Statement parseMake(int line) {
+        Token name = next();
+        if (name.kind != Kind.QUOTED) {
+            throw new LogoException("Expected a quoted name after make", line);
+        }
+        Expression value = parseExpression();
+        int local = parameters == null ? -1 : parameters.indexOf(name.text);
+        if (local >= 0) {
+            return new LogoProgram.SetLocal(line, local, value);
+        }
+        return new LogoProgram.SetGlobal(line, global(name.text), value);
+    }
+
+    private int global(String name) {
+        Integer index = globals.get(name);
+        if (index == null) {
+            index = globals.size();
+            globals.put(name, index);
+        }
+        return index;
+    }
+
+    private Expression[] parseArguments(Procedure procedure) {
+        Expression[] arguments = new Expression[procedure.parameterCount];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = parseExpression();
+        }
+        return arguments;
+    }
+
+    private Expression parseExpression() {
+        Expression left = parseSum();
+        Token token = peek();
+        if (token.kind == Kind.OPERATOR && "+-*/".indexOf(token.text.charAt(0)) < 0) {
+            next();
+            left = new LogoProgram.Binary(token.line, token.text, left, parseSum());
+        }
+        return left;
+    }
+
+    private Expression parseSum() {
+        Expression left = parseProduct();
+        while (peek().is(Kind.OPERATOR, "+") || peek().is(Kind.OPERATOR, "-")) {
+            Token token = next();
+            left = new LogoProgram.Binary(token.line, token.text, left, parseProduct());
+        }
+        return left;
+    }
+
+    private Expression parseProduct() {
+        Expression left = parseUnary();
+        while (peek().is(Kind.OPERATOR, "*") || peek().is(Kind.OPERATOR, "/")) {
+            Token token = next();
+            left = new LogoProgram.Binary(token.line, token.text, left, parseUnary());
+        }
+        return left;
+    }
+
+    private Expression parseUnary() {
+        if (peek().is(Kind.OPERATOR, "-")) {
+            Token token = next();
+            return new LogoProgram.Negate(token.line, parseUnary());
+        }
+        return parsePrimary();
+    }
+
+    private Expression parsePrimary() {
+        Token token = next();
+        int line = token.line;
+        switch (token.kind) {
+            case NUMBER:
+                try {
+                    return new LogoProgram.Number(line, Double.parseDouble(token.text));
+                } catch (NumberFormatException e) {
+                    throw new LogoException("Bad number " + token.text, line);
+                }
+            case VARIABLE:
+                int local = parameters == null ? -1 : parameters.indexOf(token.text);
+                if (local >= 0) {
+                    return new LogoProgram.Local(line, local);
+                }
+                return new LogoProgram.Global(line, global(token.text), token.text);
+            case OPEN_PAREN:
+                Expression inner = parseExpression();
+                Token close = next();
+                if (close.kind != Kind.CLOSE_PAREN) {
+                    throw new LogoException("Expected ) but found " + close.text, close.line);
+                }
+                return inner;
+            case WORD:
+                if (token.text.equals("repcount")) {
+                    return new LogoProgram.RepCount(line);
+                }
+                if (isFunction(token.text)) {
+                    return new LogoProgram.Function(line, token.text, parseExpression());
+                }
+                Procedure procedure = procedures.get(token.text);
+                if (procedure != null) {
+                    return new LogoProgram.CallValue(line, procedure, parseArguments(procedure));
+                }
+                throw new LogoException("I don't know how to " + token.text, line);
+            default:
+                throw new LogoException("Expected a value but found " + token.text, line);
+        }
+    }
+
+    private static boolean isFunction(String name) {
+        return Arrays.asList(LogoProgram.Function.NAMES).contains(name);
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private Token next() {
+        Token token = tokens.get(position);
+        if (token.kind != Kind.END) {
+            position++;
+        }
+        return token;
+    }
+
+}
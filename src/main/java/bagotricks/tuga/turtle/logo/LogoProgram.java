@@ -0,0 +1,620 @@
+package bagotricks.tuga.turtle.logo;
+
+import bagotricks.tuga.turtle.Tuga;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A parsed Logo program, ready to run any number of times. It's a tree of
+ * statements and expressions that run themselves straight against a
+ * {@link Tuga}. Names are all looked up when parsing, so variables are slots
+ * in arrays and calls go straight to their procedures.
+ */
+public class LogoProgram {
+
+    /**
+     * What a run works on, shared by all its procedure calls.
+     */
+    static class State {
+
+        final Tuga tuga;
+
+        final double[] globals;
+
+        final boolean[] assigned;
+
+        final Random random = new Random();
+
+        State(Tuga tuga, int globalCount) {
+            this.tuga = tuga;
+            globals = new double[globalCount];
+            assigned = new boolean[globalCount];
+        }
+
+    }
+
+    /**
+     * One call of a procedure, or the top of the program.
+     */
+    static class Frame {
+
+        final State state;
+
+        final double[] locals;
+
+        /**
+         * The count of the innermost repeat.
+         */
+        int repcount = -1;
+
+        double output;
+
+        boolean hasOutput;
+
+        Frame(State state, double[] locals) {
+            this.state = state;
+            this.locals = locals;
+        }
+
+    }
+
+    abstract static class Statement {
+
+        final int line;
+
+        Statement(int line) {
+            this.line = line;
+        }
+
+        /**
+         * @return true to leave the procedure
+         */
+        abstract boolean run(Frame frame);
+
+    }
+
+    abstract static class Expression {
+
+        final int line;
+
+        Expression(int line) {
+            this.line = line;
+        }
+
+        abstract double eval(Frame frame);
+
+    }
+
+    static class Procedure {
+
+        final String name;
+
+        final int parameterCount;
+
+        /**
+         * Set once the body is parsed, which may call the procedure itself.
+         */
+        Statement[] body;
+
+        Procedure(String name, int parameterCount) {
+            this.name = name;
+            this.parameterCount = parameterCount;
+        }
+
+    }
+
+    static boolean runAll(Statement[] statements, Frame frame) {
+        for (Statement statement : statements) {
+            if (statement.run(frame)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Frame call(Procedure procedure, Expression[] arguments, Frame frame) {
+        double[] locals = new double[procedure.parameterCount];
+        for (int i = 0; i < locals.length; i++) {
+            locals[i] = arguments[i].eval(frame);
+        }
+        Frame callee = new Frame(frame.state, locals);
+        runAll(procedure.body, callee);
+        return callee;
+    }
+
+    static class Call extends Statement {
+
+        final Procedure procedure;
+
+        final Expression[] arguments;
+
+        Call(int line, Procedure procedure, Expression[] arguments) {
+            super(line);
+            this.procedure = procedure;
+            this.arguments = arguments;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            call(procedure, arguments, frame);
+            return false;
+        }
+
+    }
+
+    static class CallValue extends Expression {
+
+        final Procedure procedure;
+
+        final Expression[] arguments;
+
+        CallValue(int line, Procedure procedure, Expression[] arguments) {
+            super(line);
+            this.procedure = procedure;
+            this.arguments = arguments;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            Frame callee = call(procedure, arguments, frame);
+            if (!callee.hasOutput) {
+                throw new LogoException(procedure.name + " didn't output a value", line);
+            }
+            return callee.output;
+        }
+
+    }
+
+    static class Output extends Statement {
+
+        final Expression value;
+
+        Output(int line, Expression value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.output = value.eval(frame);
+            frame.hasOutput = true;
+            return true;
+        }
+
+    }
+
+    static class Stop extends Statement {
+
+        Stop(int line) {
+            super(line);
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            return true;
+        }
+
+    }
+
+    static class Repeat extends Statement {
+
+        final Expression count;
+
+        final Statement[] body;
+
+        Repeat(int line, Expression count, Statement[] body) {
+            super(line);
+            this.count = count;
+            this.body = body;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            long times = (long) count.eval(frame);
+            int outer = frame.repcount;
+            try {
+                for (int i = 1; i <= times; i++) {
+                    frame.repcount = i;
+                    if (runAll(body, frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                frame.repcount = outer;
+            }
+        }
+
+    }
+
+    static class If extends Statement {
+
+        final Expression condition;
+
+        final Statement[] then;
+
+        /**
+         * Null without an else.
+         */
+        final Statement[] otherwise;
+
+        If(int line, Expression condition, Statement[] then, Statement[] otherwise) {
+            super(line);
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            if (condition.eval(frame) != 0) {
+                return runAll(then, frame);
+            }
+            return otherwise != null && runAll(otherwise, frame);
+        }
+
+    }
+
+    static class SetLocal extends Statement {
+
+        final int index;
+
+        final Expression value;
+
+        SetLocal(int line, int index, Expression value) {
+            super(line);
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.locals[index] = value.eval(frame);
+            return false;
+        }
+
+    }
+
+    static class SetGlobal extends Statement {
+
+        final int index;
+
+        final Expression value;
+
+        SetGlobal(int line, int index, Expression value) {
+            super(line);
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.globals[index] = value.eval(frame);
+            frame.state.assigned[index] = true;
+            return false;
+        }
+
+    }
+
+    static class Walk extends Statement {
+
+        final Expression distance;
+
+        /**
+         * -1 to go back.
+         */
+        final int sign;
+
+        Walk(int line, Expression distance, int sign) {
+            super(line);
+            this.distance = distance;
+            this.sign = sign;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.tuga.walk(sign * distance.eval(frame));
+            return false;
+        }
+
+    }
+
+    static class Jump extends Statement {
+
+        final Expression distance;
+
+        Jump(int line, Expression distance) {
+            super(line);
+            this.distance = distance;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.tuga.jump(distance.eval(frame));
+            return false;
+        }
+
+    }
+
+    static class Turn extends Statement {
+
+        final Expression angle;
+
+        /**
+         * -1 to turn right.
+         */
+        final int sign;
+
+        Turn(int line, Expression angle, int sign) {
+            super(line);
+            this.angle = angle;
+            this.sign = sign;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.tuga.turn(sign * angle.eval(frame));
+            return false;
+        }
+
+    }
+
+    static class Pen extends Statement {
+
+        final boolean down;
+
+        Pen(int line, boolean down) {
+            super(line);
+            this.down = down;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.tuga.pen(down);
+            return false;
+        }
+
+    }
+
+    static class SetColor extends Statement {
+
+        final Expression red;
+
+        final Expression green;
+
+        final Expression blue;
+
+        SetColor(int line, Expression red, Expression green, Expression blue) {
+            super(line);
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+
+        @Override
+        boolean run(Frame frame) {
+            frame.state.tuga.color3(component(red, frame), component(green, frame), component(blue, frame));
+            return false;
+        }
+
+        private float component(Expression expression, Frame frame) {
+            double value = expression.eval(frame);
+            if (!(value >= 0 && value <= 100)) {
+                throw new LogoException("setcolor needs numbers from 0 to 100", line);
+            }
+            return (float) value;
+        }
+
+    }
+
+    static class Number extends Expression {
+
+        final double value;
+
+        Number(int line, double value) {
+            super(line);
+            this.value = value;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            return value;
+        }
+
+    }
+
+    static class Local extends Expression {
+
+        final int index;
+
+        Local(int line, int index) {
+            super(line);
+            this.index = index;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            return frame.locals[index];
+        }
+
+    }
+
+    static class Global extends Expression {
+
+        final int index;
+
+        final String name;
+
+        Global(int line, int index, String name) {
+            super(line);
+            this.index = index;
+            this.name = name;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            if (!frame.state.assigned[index]) {
+                throw new LogoException(name + " has no value", line);
+            }
+            return frame.state.globals[index];
+        }
+
+    }
+
+    static class RepCount extends Expression {
+
+        RepCount(int line) {
+            super(line);
+        }
+
+        @Override
+        double eval(Frame frame) {
+            if (frame.repcount < 0) {
+                throw new LogoException("repcount outside of repeat", line);
+            }
+            return frame.repcount;
+        }
+
+    }
+
+    static class Negate extends Expression {
+
+        final Expression operand;
+
+        Negate(int line, Expression operand) {
+            super(line);
+            this.operand = operand;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            return -operand.eval(frame);
+        }
+
+    }
+
+    static class Binary extends Expression {
+
+        static final String[] OPERATORS = {"+", "-", "*", "/", "<", ">", "=", "<=", ">=", "<>"};
+
+        /**
+         * Index into {@link #OPERATORS}, so running doesn't compare strings.
+         */
+        final int operator;
+
+        final Expression left;
+
+        final Expression right;
+
+        Binary(int line, String operator, Expression left, Expression right) {
+            super(line);
+            this.operator = Arrays.asList(OPERATORS).indexOf(operator);
+            if (this.operator < 0) {
+                throw new LogoException("Unknown operator " + operator, line);
+            }
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            double a = left.eval(frame);
+            double b = right.eval(frame);
+            switch (operator) {
+                case 0:
+                    return a + b;
+                case 1:
+                    return a - b;
+                case 2:
+                    return a * b;
+                case 3:
+                    if (b == 0) {
+                        throw new LogoException("Can't divide by zero", line);
+                    }
+                    return a / b;
+                case 4:
+                    return a < b ? 1 : 0;
+                case 5:
+                    return a > b ? 1 : 0;
+                case 6:
+                    return a == b ? 1 : 0;
+                case 7:
+                    return a <= b ? 1 : 0;
+                case 8:
+                    return a >= b ? 1 : 0;
+                default:
+                    return a != b ? 1 : 0;
+            }
+        }
+
+    }
+
+    /**
+     * Reporters built in, that take one number.
+     */
+    static class Function extends Expression {
+
+        static final String[] NAMES = {"random", "sqrt", "abs", "int", "round", "sin", "cos", "not"};
+
+        /**
+         * Index into {@link #NAMES}.
+         */
+        final int function;
+
+        final Expression argument;
+
+        Function(int line, String name, Expression argument) {
+            super(line);
+            function = Arrays.asList(NAMES).indexOf(name);
+            if (function < 0) {
+                throw new LogoException("Unknown function " + name, line);
+            }
+            this.argument = argument;
+        }
+
+        @Override
+        double eval(Frame frame) {
+            double value = argument.eval(frame);
+            switch (function) {
+                case 0:
+                    if (value < 1) {
+                        throw new LogoException("random needs a number above 0", line);
+                    }
+                    return frame.state.random.nextInt((int) value);
+                case 1:
+                    return Math.sqrt(value);
+                case 2:
+                    return Math.abs(value);
+                case 3:
+                    return (long) value;
+                case 4:
+                    return Math.round(value);
+                case 5:
+                    return Math.sin(Math.toRadians(value));
+                case 6:
+                    return Math.cos(Math.toRadians(value));
+                default:
+                    return value == 0 ? 1 : 0;
+            }
+        }
+
+    }
+
+    private final Statement[] statements;
+
+    private final int globalCount;
+
+    LogoProgram(Statement[] statements, int globalCount) {
+        this.statements = statements;
+        this.globalCount = globalCount;
+    }
+
+    /**
+     * Runs the program from the start, with no variables set.
+     */
+    public void run(Tuga tuga) {
+        Frame frame = new Frame(new State(tuga, globalCount), new double[0]);
+        runAll(statements, frame);
+    }
+
+}
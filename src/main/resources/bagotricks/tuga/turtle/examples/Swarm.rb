@@ -0,0 +1,18 @@
+# Each spawned turtle walks its own spiral at the same time as the others.
+
+def spiral(turtle, size)
+	60.times do |i|
+		turtle.walk size + i
+		turtle.turn 61
+	end
+end
+
+colors = [red, orange, green, blue, purple, black]
+
+colors.each do |c|
+	spawn do |t|
+		t.color c
+		spiral t, 4
+	end
+	turn 60
+end
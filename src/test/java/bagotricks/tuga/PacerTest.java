@@ -0,0 +1,134 @@
+package bagotricks.tuga;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PacerTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void testInstantDoesNotWait() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        assertTrue(pacer.isInstant());
+        long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            pacer.step();
+        }
+        assertTrue(System.nanoTime() - start < 1000 * MILLIS);
+    }
+
+    @Test
+    public void testStepsPerSecond() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_SECOND, 100);
+        pacer.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            pacer.step();
+        }
+        long elapsed = System.nanoTime() - start;
+        // 20 steps at 100 a second take 200 ms.
+        assertTrue("Took " + elapsed / MILLIS + " ms", elapsed >= 190 * MILLIS);
+        assertTrue("Took " + elapsed / MILLIS + " ms", elapsed < 2000 * MILLIS);
+    }
+
+    @Test
+    public void testReleaseWakesWaitingStep() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_SECOND, 1);
+        pacer.start();
+        Thread stepper = startSteps(pacer, 1);
+        awaitWaiting(stepper);
+        long start = System.nanoTime();
+        pacer.release();
+        stepper.join(2000);
+        assertFalse(stepper.isAlive());
+        // Well before the second a step would otherwise take.
+        assertTrue(System.nanoTime() - start < 500 * MILLIS);
+    }
+
+    @Test
+    public void testStepsPerFrameWaitsForPaint() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_FRAME, 3);
+        // Slow paints make the wait for a frame longer, up to a quarter second.
+        pacer.frameRequested();
+        Thread.sleep(100);
+        pacer.framePainted();
+        pacer.start();
+        Thread stepper = startSteps(pacer, 2);
+        stepper.join(2000);
+        assertFalse("Only every third step waits", stepper.isAlive());
+        stepper = startSteps(pacer, 1);
+        awaitWaiting(stepper);
+        long start = System.nanoTime();
+        pacer.framePainted();
+        stepper.join(2000);
+        assertFalse(stepper.isAlive());
+        assertTrue(System.nanoTime() - start < 200 * MILLIS);
+    }
+
+    @Test
+    public void testStepsPerFrameGivesUpWithoutPaint() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_FRAME, 1);
+        pacer.start();
+        long start = System.nanoTime();
+        pacer.step();
+        // Nothing paints, so it waits at most a quarter second.
+        assertTrue(System.nanoTime() - start < 1000 * MILLIS);
+    }
+
+    @Test
+    public void testPaintLatency() throws InterruptedException {
+        Pacer pacer = new Pacer();
+        assertEquals(0, pacer.getPaintLatency());
+        pacer.frameRequested();
+        Thread.sleep(50);
+        // Later requests are served by the same paint and don't restart the clock.
+        pacer.frameRequested();
+        pacer.framePainted();
+        long first = pacer.getPaintLatency();
+        assertTrue("Latency " + first, first >= 50 * MILLIS);
+        pacer.frameRequested();
+        pacer.framePainted();
+        long second = pacer.getPaintLatency();
+        // Averaged, so one fast paint only brings it down a bit.
+        assertTrue("Latency " + second, second < first);
+        assertTrue("Latency " + second, second > first / 2);
+        // Painting without a request doesn't count.
+        pacer.framePainted();
+        assertEquals(second, pacer.getPaintLatency());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new Pacer().setSpeed(Pacer.Mode.STEPS_PER_SECOND, 0);
+    }
+
+    private static Thread startSteps(final Pacer pacer, final int count) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        pacer.step();
+                    }
+                } catch (InterruptedException e) {
+                    // Ends the thread.
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(thread.isAlive());
+            Thread.sleep(1);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package bagotricks.tuga;
+
+import java.awt.Component;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RepaintSchedulerTest {
+
+    private static class CountingComponent extends Component {
+
+        private static final long serialVersionUID = 1L;
+
+        int repaints;
+
+        @Override
+        public void repaint() {
+            repaints++;
+        }
+
+    }
+
+    @Test
+    public void testCoalescesRepaints() {
+        CountingComponent component = new CountingComponent();
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_FRAME, 1);
+        RepaintScheduler scheduler = new RepaintScheduler(component, pacer);
+        scheduler.actionPerformed(null);
+        assertEquals("Nothing to paint yet", 0, component.repaints);
+        for (int i = 0; i < 1000; i++) {
+            scheduler.markDirty();
+        }
+        scheduler.actionPerformed(null);
+        assertEquals(1, component.repaints);
+        scheduler.actionPerformed(null);
+        assertEquals("Already painted", 1, component.repaints);
+        scheduler.markDirty();
+        scheduler.actionPerformed(null);
+        assertEquals(2, component.repaints);
+    }
+
+    @Test
+    public void testReportsFramesToPacer() throws InterruptedException {
+        CountingComponent component = new CountingComponent();
+        Pacer pacer = new Pacer();
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_FRAME, 1);
+        RepaintScheduler scheduler = new RepaintScheduler(component, pacer);
+        scheduler.markDirty();
+        scheduler.actionPerformed(null);
+        Thread.sleep(20);
+        pacer.framePainted();
+        assertTrue(pacer.getPaintLatency() >= 20 * 1000000L);
+    }
+
+    @Test
+    public void testInstantPaintsOnlyAtEnd() {
+        CountingComponent component = new CountingComponent();
+        Pacer pacer = new Pacer();
+        RepaintScheduler scheduler = new RepaintScheduler(component, pacer);
+        scheduler.markDirty();
+        scheduler.actionPerformed(null);
+        assertEquals(0, component.repaints);
+        // Still dirty if the speed changes during the run.
+        pacer.setSpeed(Pacer.Mode.STEPS_PER_SECOND, 10);
+        scheduler.actionPerformed(null);
+        assertEquals(1, component.repaints);
+    }
+
+}
@@ -0,0 +1,174 @@
+package bagotricks.tuga.turtle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CommandRecorderTest {
+
+    @Test
+    public void testReplayRepeatsCalls() throws Exception {
+        CallLog recorded = new CallLog("main", true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommandRecorder recorder = new CommandRecorder(recorded, out);
+        recorder.walk(100);
+        recorder.turn(0.1);
+        recorder.pen(false);
+        recorder.jump(-2.5);
+        recorder.pen(true);
+        recorder.color(new float[]{10, 20.5f, 30});
+        recorder.spawn(new TurtleProgram() {
+            @Override
+            public void run(Tuga turtle) {
+                turtle.turn(90);
+                turtle.walk(1e-7);
+            }
+        });
+        recorder.walk(Math.PI);
+        recorder.turnWalk(new double[]{90, 10, -45, 0.1});
+        recorder.walkTo(new double[]{3, 4, 5.5, -6});
+        recorder.flush();
+
+        CallLog replayed = new CallLog("main", false);
+        new CommandReplayer(new ByteArrayInputStream(out.toByteArray())).replay(replayed);
+
+        assertEquals(recorded.calls, replayed.calls);
+        assertEquals(12, recorded.calls.size());
+    }
+
+    @Test
+    public void testApplyRecordsEachCommand() throws Exception {
+        ByteArrayOutputStream applied = new ByteArrayOutputStream();
+        new CommandRecorder(new CallLog("main", true), applied).apply(new double[]{
+            TugaCommands.WALK, 10,
+            TugaCommands.PEN_UP,
+            TugaCommands.TURN, -90,
+            TugaCommands.JUMP, 2.5,
+            TugaCommands.PEN_DOWN
+        });
+        ByteArrayOutputStream called = new ByteArrayOutputStream();
+        CommandRecorder recorder = new CommandRecorder(new CallLog("main", true), called);
+        recorder.walk(10);
+        recorder.pen(false);
+        recorder.turn(-90);
+        recorder.jump(2.5);
+        recorder.pen(true);
+        assertArrayEquals(called.toByteArray(), applied.toByteArray());
+    }
+
+    @Test
+    public void testSmallValuesAreCompact() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommandRecorder recorder = new CommandRecorder(new CallLog("main", true), out);
+        int header = out.size();
+        for (int i = 0; i < 100; i++) {
+            recorder.walk(10);
+            recorder.turn(-90);
+        }
+        recorder.flush();
+        // Opcode, turtle id and a float each.
+        assertEquals(header + 200 * 6, out.size());
+    }
+
+    /**
+     * Writes down all calls. Spawned turtles get their own thread, like in
+     * the engine.
+     */
+    private static class CallLog implements Tuga {
+
+        final String name;
+
+        final List<String> calls;
+
+        /**
+         * Whether to wait for spawned turtles to finish, so recording doesn't
+         * depend on timing.
+         */
+        final boolean awaitSpawned;
+
+        int children;
+
+        CallLog(String name, boolean awaitSpawned) {
+            this(name, Collections.synchronizedList(new ArrayList<String>()), awaitSpawned);
+        }
+
+        CallLog(String name, List<String> calls, boolean awaitSpawned) {
+            this.name = name;
+            this.calls = calls;
+            this.awaitSpawned = awaitSpawned;
+        }
+
+        @Override
+        public void apply(double[] commands) {
+            TugaCommands.apply(this, commands);
+        }
+
+        @Override
+        public float[] color(float[] val) {
+            return color3(val[0], val[1], val[2]);
+        }
+
+        @Override
+        public float[] color3(float red, float green, float blue) {
+            calls.add(name + " color " + red + " " + green + " " + blue);
+            return new float[]{red, green, blue};
+        }
+
+        @Override
+        public void jump(double distance) {
+            calls.add(name + " jump " + distance);
+        }
+
+        @Override
+        public void pen(boolean down) {
+            calls.add(name + " pen " + down);
+        }
+
+        @Override
+        public void spawn(final TurtleProgram program) {
+            final String child = name + "." + children++;
+            calls.add(name + " spawn " + child);
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    program.run(new CallLog(child, calls, awaitSpawned));
+                }
+            };
+            thread.start();
+            if (awaitSpawned) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        @Override
+        public void turn(double angle) {
+            calls.add(name + " turn " + angle);
+        }
+
+        @Override
+        public void turnWalk(double[] pairs) {
+            calls.add(name + " turnWalk " + Arrays.toString(pairs));
+        }
+
+        @Override
+        public void walk(double distance) {
+            calls.add(name + " walk " + distance);
+        }
+
+        @Override
+        public void walkTo(double[] points) {
+            calls.add(name + " walkTo " + Arrays.toString(points));
+        }
+
+    }
+
+}
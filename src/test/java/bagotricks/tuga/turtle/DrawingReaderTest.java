@@ -0,0 +1,85 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class DrawingReaderTest {
+
+    private static final double DELTA = 0.5 / DrawingWriter.SCALE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Drawing drawing = createDrawing();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DrawingWriter.write(drawing, out);
+        Drawing loaded = new Drawing();
+        DrawingReader.read(loaded, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(drawing.paths.size(), loaded.paths.size());
+        for (int p = 0; p < drawing.paths.size(); p++) {
+            Path expected = drawing.paths.get(p);
+            Path actual = loaded.paths.get(p);
+            assertEquals(expected.width, actual.width, 0.0);
+            assertEquals(expected.steps.size(), actual.steps.size());
+            for (int i = 0; i < expected.steps.size(); i++) {
+                assertStep(expected.steps, i, actual.steps, i);
+            }
+        }
+    }
+
+    @Test
+    public void testReadChunk() throws Exception {
+        Drawing drawing = createDrawing();
+        File file = folder.newFile("drawing.tuga");
+        DrawingWriter.write(drawing, file);
+        try (DrawingReader reader = new DrawingReader(file)) {
+            assertEquals(2, reader.getPathCount());
+            StepStore expected = drawing.paths.get(0).steps;
+            assertEquals(expected.size(), reader.getStepCount(0));
+            int chunk = DrawingReader.getChunk(2 * DrawingWriter.CHUNK_STEPS + 5);
+            assertEquals(2, chunk);
+            assertEquals(3, reader.getChunkCount(0));
+            StepStore actual = new ArrayStepStore();
+            reader.readChunk(0, chunk, actual);
+            assertEquals(expected.size() - 2 * DrawingWriter.CHUNK_STEPS, actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertStep(expected, 2 * DrawingWriter.CHUNK_STEPS + i, actual, i);
+            }
+        }
+    }
+
+    private Drawing createDrawing() {
+        Drawing drawing = new Drawing();
+        drawing.compactSteps = false;
+        drawing.reset();
+        Path path = drawing.lastPath();
+        path.width = 2;
+        double x = 0;
+        double y = 0;
+        for (int i = 1; i < 2 * DrawingWriter.CHUNK_STEPS + 100; i++) {
+            x += Math.cos(i * 0.1) * 10;
+            y -= Math.sin(i * 0.1) * 10;
+            path.steps.add(x, y, i % 50 != 0, i % 1000 < 500 ? Color.red : Color.blue);
+        }
+        Path other = drawing.newPath(5, 5);
+        other.steps.add(-1.5, 7.25, true, Color.green);
+        drawing.paths.add(other);
+        return drawing;
+    }
+
+    private void assertStep(StepStore expected, int expectedIndex, StepStore actual, int actualIndex) {
+        assertEquals(expected.x(expectedIndex), actual.x(actualIndex), DELTA);
+        assertEquals(expected.y(expectedIndex), actual.y(actualIndex), DELTA);
+        assertEquals(expected.penDown(expectedIndex), actual.penDown(actualIndex));
+        assertEquals(expected.color(expectedIndex), actual.color(actualIndex));
+    }
+
+}
@@ -0,0 +1,63 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DrawingRendererTest {
+
+    /**
+     * Pixels per world unit at this size.
+     */
+    private static final int SIZE = 185;
+
+    @Test
+    public void testKnownPixels() {
+        Drawing drawing = new Drawing();
+        Path path = drawing.lastPath();
+        path.width = 40;
+        path.steps.add(800, 0, true, Color.red);
+        path.steps.add(800, 800, false, Color.red);
+        path.steps.add(0, 800, true, Color.blue);
+        BufferedImage image = DrawingRenderer.render(drawing, SIZE, SIZE);
+
+        // Along the red line, right of the center.
+        assertPixel(Color.red, image, 400, 0);
+        // The pen was up going up the right side.
+        assertPixel(Color.white, image, 800, 400);
+        // Along the blue line, with y up.
+        assertPixel(Color.blue, image, 400, 800);
+        assertPixel(Color.white, image, -400, -400);
+    }
+
+    @Test
+    public void testLongRunsAcrossBatches() {
+        Drawing drawing = new Drawing();
+        drawing.compactSteps = false;
+        drawing.reset();
+        Path path = drawing.lastPath();
+        path.width = 40;
+        // Far more points than go into one polyline, with colors changing
+        // partway through a batch.
+        int count = 10000;
+        for (int i = 1; i <= count; i++) {
+            path.steps.add(-900 + 1800.0 * i / count, 0, true, i < count / 2 ? Color.red : Color.blue);
+        }
+        BufferedImage image = DrawingRenderer.render(drawing, SIZE, SIZE);
+
+        for (int x = -850; x < 0; x += 50) {
+            assertPixel(Color.red, image, x, 0);
+        }
+        for (int x = 50; x < 900; x += 50) {
+            assertPixel(Color.blue, image, x, 0);
+        }
+    }
+
+    private void assertPixel(Color expected, BufferedImage image, double x, double y) {
+        int px = (int) (SIZE / 2 + x * SIZE / DrawingRenderer.WORLD_SIZE);
+        int py = (int) (SIZE / 2 - y * SIZE / DrawingRenderer.WORLD_SIZE);
+        assertEquals("at " + x + ", " + y, expected.getRGB(), image.getRGB(px, py));
+    }
+
+}
@@ -0,0 +1,67 @@
+package bagotricks.tuga.turtle;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class JavaSnippetRunnerTest {
+
+    @Test
+    public void testSquare() {
+        String script
+                = "for (int i = 0; i < 4; i++) {\n"
+                + "    walk(100);\n"
+                + "    turn(right);\n"
+                + "}";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        verify(tuga, times(4)).walk(100.0);
+        verify(tuga, times(4)).turn(-90.0);
+    }
+
+    @Test
+    public void testHelperMethods() {
+        String script
+                = "public void run() {\n"
+                + "    side(sqrt(100));\n"
+                + "}\n"
+                + "void side(double size) {\n"
+                + "    walk(size);\n"
+                + "}";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        verify(tuga).walk(10.0);
+    }
+
+    @Test
+    public void testErrorLines() {
+        Tuga tuga = mock(Tuga.class);
+        try {
+            run("walk(1);\nwalk(2)", tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: ';' expected on line 2", e.getMessage());
+        }
+        try {
+            run("walk(1);\nint zero = 0;\nwalk(1 / zero);", tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: java.lang.ArithmeticException: / by zero on line 3", e.getMessage());
+        }
+        try {
+            run("int zero = 0;\nint far = 1 / zero;\npublic void run() {\n    walk(far);\n}", tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: java.lang.ArithmeticException: / by zero on line 2", e.getMessage());
+        }
+    }
+
+    private void run(String script, Tuga tuga) {
+        ScriptRunner instance = new JavaSnippetRunner();
+        instance.init(tuga);
+        instance.execute("", script);
+    }
+
+}
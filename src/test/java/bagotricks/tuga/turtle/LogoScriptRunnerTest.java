@@ -0,0 +1,115 @@
+package bagotricks.tuga.turtle;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LogoScriptRunnerTest {
+
+    @Test
+    public void testSquare() {
+        String script
+                = "repeat 4 [fd 100 rt 90]";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        verify(tuga, times(4)).walk(100.0);
+        verify(tuga, times(4)).turn(-90.0);
+    }
+
+    @Test
+    public void testProcedures() {
+        String script
+                = "to side :size\n"
+                + "  forward :size * 2\n"
+                + "end\n"
+                + "to double :x\n"
+                + "  output :x + :x\n"
+                + "end\n"
+                + "make \"n 3\n"
+                + "side :n\n"
+                + "penup\n"
+                + "jump double (:n - 1)\n"
+                + "left :angle\n";
+        Tuga tuga = mock(Tuga.class);
+        try {
+            run(script, tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: angle has no value on line 11", e.getMessage());
+        }
+
+        InOrder inOrder = inOrder(tuga);
+        inOrder.verify(tuga).walk(6.0);
+        inOrder.verify(tuga).pen(false);
+        inOrder.verify(tuga).jump(4.0);
+        verifyNoMoreInteractions(tuga);
+    }
+
+    @Test
+    public void testRecursion() {
+        String script
+                = "to tree :size\n"
+                + "  if :size < 10 [stop]\n"
+                + "  fd :size\n"
+                + "  tree :size / 2\n"
+                + "  bk :size\n"
+                + "end\n"
+                + "tree 40";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        InOrder inOrder = inOrder(tuga);
+        inOrder.verify(tuga).walk(40.0);
+        inOrder.verify(tuga).walk(20.0);
+        inOrder.verify(tuga).walk(10.0);
+        inOrder.verify(tuga).walk(-10.0);
+        inOrder.verify(tuga).walk(-20.0);
+        inOrder.verify(tuga).walk(-40.0);
+        verifyNoMoreInteractions(tuga);
+    }
+
+    @Test
+    public void testColor() {
+        String script
+                = "setcolor \"blue\n"
+                + "setcolor 10 20 30 + 5";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        verify(tuga).color3(0, 0, 100);
+        verify(tuga).color3(10, 20, 35);
+    }
+
+    @Test
+    public void testColorOutOfRange() {
+        Tuga tuga = mock(Tuga.class);
+        try {
+            run("setcolor 10 20 30\nsetcolor 10 120 30", tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: setcolor needs numbers from 0 to 100 on line 2", e.getMessage());
+        }
+        verify(tuga).color3(10, 20, 30);
+        verifyNoMoreInteractions(tuga);
+    }
+
+    @Test
+    public void testUnsetVariable() {
+        Tuga tuga = mock(Tuga.class);
+        try {
+            run("fd 10\n\nfd :far", tuga);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Error: far has no value on line 3", e.getMessage());
+        }
+    }
+
+    private void run(String script, Tuga tuga) {
+        ScriptRunner instance = new LogoScriptRunner();
+        instance.init(tuga);
+        instance.execute("", script);
+    }
+
+}
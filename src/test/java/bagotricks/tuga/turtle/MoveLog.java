@@ -0,0 +1,77 @@
+package bagotricks.tuga.turtle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes down each move, with batches taken apart as the engine does.
+ */
+class MoveLog implements Tuga {
+
+    final List<String> calls = new ArrayList<String>();
+
+    /**
+     * @return the error message, or null if the script ran through
+     */
+    String run(ScriptRunner runner, String script) {
+        runner.init(this);
+        try {
+            runner.execute("", script);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Override
+    public void apply(double[] commands) {
+        TugaCommands.apply(this, commands);
+    }
+
+    @Override
+    public float[] color(float[] val) {
+        return color3(val[0], val[1], val[2]);
+    }
+
+    @Override
+    public float[] color3(float red, float green, float blue) {
+        calls.add("color " + red + " " + green + " " + blue);
+        return new float[]{red, green, blue};
+    }
+
+    @Override
+    public void jump(double distance) {
+        calls.add("jump " + distance);
+    }
+
+    @Override
+    public void pen(boolean down) {
+        calls.add("pen " + down);
+    }
+
+    @Override
+    public void spawn(TurtleProgram program) {
+        calls.add("spawn");
+    }
+
+    @Override
+    public void turn(double angle) {
+        calls.add("turn " + angle);
+    }
+
+    @Override
+    public void turnWalk(double[] pairs) {
+        calls.add("turnWalk " + pairs.length);
+    }
+
+    @Override
+    public void walk(double distance) {
+        calls.add("walk " + distance);
+    }
+
+    @Override
+    public void walkTo(double[] points) {
+        calls.add("walkTo " + points.length);
+    }
+
+}
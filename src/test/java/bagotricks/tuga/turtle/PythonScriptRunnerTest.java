@@ -2,6 +2,8 @@ package bagotricks.tuga.turtle;
 
 import org.junit.Test;
 import org.mockito.InOrder;
+import static org.junit.Assert.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 public class PythonScriptRunnerTest {
@@ -24,6 +26,58 @@ public class PythonScriptRunnerTest {
         verify(tuga).walk(100.0);
     }
 
+    @Test
+    public void testTurnWalk() {
+        String script
+                = "turn_walk([(left, 100), (right, 50)])";
+        Tuga tuga = mock(Tuga.class);
+        run(script, tuga);
+
+        verify(tuga).turnWalk(aryEq(new double[]{90, 100, -90, 50}));
+    }
+
+    @Test
+    public void testBuffered() {
+        String script
+                = "walk(100)\n"
+                + "turn(left)\n"
+                + "pen(up)\n"
+                + "color(red)\n"
+                + "walk(5)";
+        Tuga tuga = mock(Tuga.class);
+        ScriptRunner instance = new PythonScriptRunner(true);
+        instance.init(tuga);
+        instance.execute("", script);
+
+        InOrder inOrder = inOrder(tuga);
+        inOrder.verify(tuga).apply(aryEq(new double[]{TugaCommands.WALK, 100, TugaCommands.TURN, 90, TugaCommands.PEN_UP}));
+        inOrder.verify(tuga).color(any(float[].class));
+        inOrder.verify(tuga).apply(aryEq(new double[]{TugaCommands.WALK, 5}));
+        verifyNoMoreInteractions(tuga);
+    }
+
+    @Test
+    public void testBufferedSameAsUnbuffered() {
+        String[] scripts = {
+            "walk(100)\nturn(left)\njump(2.5)\npen(up)\nwalk(10L)\npen(down)\nturn(-0.5)",
+            // Pen takes whatever Java makes of the value, not its truth.
+            "pen(up)\nwalk(1)\npen(0)\nwalk(2)\npen(1)\nwalk(3)",
+            "walk(1)\nwalk(True)\nturn(2)",
+            "walk(1)\nwalk('far')\nwalk(2)",
+            "walk(1)\nturn(None)\nwalk(2)",
+            "walk(1)\npen('up')\nwalk(2)",
+            "walk(1)\njump([5])"
+        };
+        for (String script : scripts) {
+            MoveLog unbuffered = new MoveLog();
+            String unbufferedError = unbuffered.run(new PythonScriptRunner(false), script);
+            MoveLog buffered = new MoveLog();
+            String bufferedError = buffered.run(new PythonScriptRunner(true), script);
+            assertEquals(script, unbufferedError, bufferedError);
+            assertEquals(script, unbuffered.calls, buffered.calls);
+        }
+    }
+
     @Test
     public void testJump() {
         String script
@@ -153,4 +207,5 @@ public class PythonScriptRunnerTest {
         instance.init(tuga);
         instance.execute("", script);
     }
+
 }
@@ -0,0 +1,91 @@
+package bagotricks.tuga.turtle;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeyDependsOnLanguageAndText() {
+        String key = ResultCache.key("ruby", "walk 100");
+        assertEquals(40, key.length());
+        assertEquals(key, ResultCache.key("ruby", "walk 100"));
+        assertFalse(key.equals(ResultCache.key("python", "walk 100")));
+        assertFalse(key.equals(ResultCache.key("ruby", "walk 101")));
+    }
+
+    @Test
+    public void testIsDeterministic() {
+        assertTrue(ResultCache.isDeterministic("4.times { walk 100; turn 90 }"));
+        assertFalse(ResultCache.isDeterministic("walk rand(100)"));
+        assertTrue(ResultCache.isDeterministic("srand 42\nwalk rand(100)"));
+        assertFalse(ResultCache.isDeterministic("walk(random.random())"));
+        assertTrue(ResultCache.isDeterministic("random.seed(1)\nwalk(random.random())"));
+        assertFalse(ResultCache.isDeterministic("walk Time.now.sec"));
+        // Not a call to rand.
+        assertTrue(ResultCache.isDeterministic("operand = 5\nwalk operand"));
+        assertTrue(ResultCache.isDeterministic("srand(42)\nwalk rand(100)"));
+        assertTrue(ResultCache.isDeterministic("r = Random.new(7)\nwalk r.rand(100)"));
+        assertTrue(ResultCache.isDeterministic("java.util.Random r = new Random(7);\nwalk(r.nextInt(100));"));
+        // Seeded, but not with a number in the program.
+        assertFalse(ResultCache.isDeterministic("srand\nwalk rand(100)"));
+        assertFalse(ResultCache.isDeterministic("srand(Time.now.to_i)\nwalk rand(100)"));
+        assertFalse(ResultCache.isDeterministic("random.seed()\nwalk(random.random())"));
+        assertFalse(ResultCache.isDeterministic("random.seed(n)\nwalk(random.random())"));
+    }
+
+    @Test
+    public void testIsCacheable() {
+        assertTrue(ResultCache.isCacheable("4.times { walk 100; turn 90 }"));
+        assertFalse(ResultCache.isCacheable("walk rand(100)"));
+        // A replay would skip the printing.
+        assertFalse(ResultCache.isCacheable("puts 'hello'\nwalk 100"));
+        assertFalse(ResultCache.isCacheable("print('hello')\nwalk(100)"));
+        assertFalse(ResultCache.isCacheable("System.out.println(1);\nwalk(100);"));
+        assertTrue(ResultCache.isCacheable("input = 5\nwalk input"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        File directory = new File(folder.getRoot(), "Cache");
+        ResultCache cache = new ResultCache(directory);
+        cache.put("a", new byte[]{1});
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertNull(new ResultCache(directory).get("a"));
+    }
+
+    @Test
+    public void testGetFromDisk() throws Exception {
+        File directory = new File(folder.getRoot(), "Cache");
+        String key = ResultCache.key("ruby", "walk 100");
+        byte[] log = {1, 2, 3};
+        new ResultCache(directory).put(key, log);
+        ResultCache cache = new ResultCache(directory);
+        assertArrayEquals(log, cache.get(key));
+        assertNull(cache.get(ResultCache.key("ruby", "walk 200")));
+        cache.clear();
+        assertNull(cache.get(key));
+        assertNull(new ResultCache(directory).get(key));
+    }
+
+    @Test
+    public void testBudgets() {
+        File directory = folder.getRoot();
+        ResultCache cache = new ResultCache(directory, 10, 10);
+        cache.put("a", new byte[6]);
+        new File(directory, "a.log").setLastModified(0);
+        cache.put("b", new byte[6]);
+        // Too big for both budgets together, so the oldest went.
+        assertEquals(1, directory.list().length);
+        assertNotNull(cache.get("b"));
+        assertNull(cache.get("a"));
+    }
+
+}
@@ -0,0 +1,30 @@
+package bagotricks.tuga.turtle;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RubyScriptRunnerTest {
+
+    @Test
+    public void testBufferedSameAsUnbuffered() {
+        String[] scripts = {
+            "walk 100\nturn left\njump 2.5\npen up\nwalk 2**40\npen down\nturn -0.5",
+            // Pen takes whatever Java makes of the value, not its truth.
+            "pen up\nwalk 1\npen 0\nwalk 2\npen nil\nwalk 3",
+            "walk 1\nwalk Rational(1, 2)\nturn 2",
+            "walk 1\nwalk 'far'\nwalk 2",
+            "walk 1\nturn nil\nwalk 2",
+            "walk 1\npen 'up'\nwalk 2",
+            "walk 1\njump [5]"
+        };
+        for (String script : scripts) {
+            MoveLog unbuffered = new MoveLog();
+            String unbufferedError = unbuffered.run(new RubyScriptRunner(false), script);
+            MoveLog buffered = new MoveLog();
+            String bufferedError = buffered.run(new RubyScriptRunner(true), script);
+            assertEquals(script, unbufferedError, bufferedError);
+            assertEquals(script, unbuffered.calls, buffered.calls);
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package bagotricks.tuga.turtle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScriptRunnerPoolTest {
+
+    private static class FakeRunner implements ScriptRunner {
+
+        final List<String> warmed = Collections.synchronizedList(new ArrayList<String>());
+
+        final List<String> compiled = Collections.synchronizedList(new ArrayList<String>());
+
+        volatile Tuga tuga;
+
+        volatile boolean closed;
+
+        @Override
+        public String getLanguage() {
+            return "fake";
+        }
+
+        @Override
+        public void init(Tuga tuga) {
+            this.tuga = tuga;
+        }
+
+        @Override
+        public void execute(String name, String script) {
+            if (!compiled.contains(script)) {
+                compile(script);
+            }
+            tuga.walk(script.length());
+        }
+
+        @Override
+        public void compile(String script) {
+            compiled.add(script);
+        }
+
+        @Override
+        public void warm(String script) {
+            warmed.add(script);
+            execute("", script);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+    private static class FakeFactory implements ScriptRunnerPool.Factory {
+
+        final List<FakeRunner> created = Collections.synchronizedList(new ArrayList<FakeRunner>());
+
+        volatile int failures;
+
+        @Override
+        public String getLanguage() {
+            return "fake";
+        }
+
+        @Override
+        public ScriptRunner create() {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("No runtime");
+            }
+            FakeRunner runner = new FakeRunner();
+            created.add(runner);
+            return runner;
+        }
+
+    }
+
+    @Test
+    public void testTakesWarmRunnersAndMakesMore() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        ScriptRunnerPool pool = new ScriptRunnerPool(factory, 2, Arrays.asList("warm up"));
+        MoveLog log = new MoveLog();
+        pool.start(log);
+        FakeRunner first = (FakeRunner) pool.take("walk");
+        FakeRunner second = (FakeRunner) pool.take("walk");
+        assertNotSame(first, second);
+        // Warmed up against a turtle that draws nothing.
+        assertEquals(Arrays.asList("warm up"), first.warmed);
+        assertEquals(Arrays.asList("warm up"), second.warmed);
+        assertTrue(log.calls.isEmpty());
+        // Then handed out for the turtle the pool was started with.
+        first.execute("", "jump");
+        assertEquals(Arrays.asList("walk 4.0"), log.calls);
+        // Each one taken gets replaced.
+        awaitCreated(factory, 4);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testPrepareCompilesWaitingAndNewRunners() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        ScriptRunnerPool pool = new ScriptRunnerPool(factory, 1, Collections.<String>emptyList());
+        pool.prepare("one");
+        pool.prepare("two");
+        pool.start(new MoveLog());
+        FakeRunner made = (FakeRunner) pool.take("two");
+        // Latest first, so the one most likely to run is ready soonest.
+        assertEquals(Arrays.asList("two", "one"), made.compiled);
+        pool.prepare("three");
+        awaitBackground(pool);
+        FakeRunner waiting = (FakeRunner) pool.take("three");
+        assertEquals("three", waiting.compiled.get(waiting.compiled.size() - 1));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSecondRunSkipsCompiling() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        ScriptRunnerPool pool = new ScriptRunnerPool(factory, 1, Collections.<String>emptyList());
+        pool.start(new MoveLog());
+        FakeRunner first = (FakeRunner) pool.take("walk 5");
+        first.execute("", "walk 5");
+        assertEquals(Arrays.asList("walk 5"), first.compiled);
+        // Its replacement compiled the script before it was handed out.
+        awaitBackground(pool);
+        FakeRunner second = (FakeRunner) pool.take("walk 5");
+        assertNotSame(first, second);
+        assertEquals(Arrays.asList("walk 5"), second.compiled);
+        second.execute("", "walk 5");
+        assertEquals(Arrays.asList("walk 5"), second.compiled);
+        // Only as many as the limit are kept, most recent first.
+        for (int i = 0; i < ScriptRunnerPool.COMPILED_LIMIT; i++) {
+            pool.take("turn " + i);
+        }
+        awaitBackground(pool);
+        FakeRunner later = (FakeRunner) pool.take("walk 5");
+        assertEquals(ScriptRunnerPool.COMPILED_LIMIT, later.compiled.size());
+        assertFalse(later.compiled.contains("walk 5"));
+        assertEquals("turn " + (ScriptRunnerPool.COMPILED_LIMIT - 1), later.compiled.get(0));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFailedRunnerReported() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        factory.failures = 1;
+        ScriptRunnerPool pool = new ScriptRunnerPool(factory, 1, Collections.<String>emptyList());
+        pool.start(new MoveLog());
+        try {
+            pool.take("walk");
+            fail("Failure not reported");
+        } catch (RuntimeException e) {
+            assertEquals("Error: Couldn't start fake", e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // Another one is made in its place.
+        assertNotNull(pool.take("walk"));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRetiredAndWaitingRunnersClosed() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        ScriptRunnerPool pool = new ScriptRunnerPool(factory, 2, Collections.<String>emptyList());
+        pool.start(new MoveLog());
+        FakeRunner taken = (FakeRunner) pool.take("walk");
+        pool.retire(taken);
+        awaitCreated(factory, 3);
+        pool.shutdown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!allClosed(factory) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(allClosed(factory));
+        try {
+            pool.take("walk");
+            fail("Taken after shutdown");
+        } catch (IllegalStateException e) {
+            // Nothing left to run on.
+        }
+        // Runners still out are closed right away.
+        FakeRunner late = new FakeRunner();
+        pool.retire(late);
+        assertTrue(late.closed);
+    }
+
+    /**
+     * Waits for the work handed to the background so far.
+     */
+    private static void awaitBackground(ScriptRunnerPool pool) throws InterruptedException {
+        FakeRunner marker = new FakeRunner();
+        pool.retire(marker);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!marker.closed && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(marker.closed);
+    }
+
+    private static boolean allClosed(FakeFactory factory) {
+        synchronized (factory.created) {
+            for (FakeRunner runner : factory.created) {
+                if (!runner.closed) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void awaitCreated(FakeFactory factory, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (factory.created.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, factory.created.size());
+    }
+
+}
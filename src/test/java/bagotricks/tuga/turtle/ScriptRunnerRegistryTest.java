@@ -0,0 +1,96 @@
+package bagotricks.tuga.turtle;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScriptRunnerRegistryTest {
+
+    private static class FakeProvider implements ScriptRunnerProvider {
+
+        int created;
+
+        @Override
+        public String getLanguage() {
+            return "fake";
+        }
+
+        @Override
+        public String getExtension() {
+            return "fk";
+        }
+
+        @Override
+        public ScriptRunner create() {
+            created++;
+            return new ScriptRunner() {
+                @Override
+                public String getLanguage() {
+                    return "fake";
+                }
+
+                @Override
+                public void init(Tuga tuga) {
+                }
+
+                @Override
+                public void execute(String name, String script) {
+                }
+
+                @Override
+                public void compile(String script) {
+                }
+
+                @Override
+                public void warm(String script) {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public List<String> getWarmScripts() {
+            return Collections.emptyList();
+        }
+
+    }
+
+    @Test
+    public void testFindsBundledLanguages() {
+        ScriptRunnerRegistry registry = new ScriptRunnerRegistry();
+        assertTrue(registry.supports("rb"));
+        assertTrue(registry.supports("py"));
+        assertTrue(registry.supports("logo"));
+        assertFalse(registry.supports("fk"));
+    }
+
+    @Test
+    public void testStartsLanguagesWhenFirstWanted() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        ScriptRunnerRegistry registry = new ScriptRunnerRegistry(Arrays.asList(provider));
+        registry.start(new TurtleEngine());
+        assertTrue(registry.supports("fk"));
+        assertEquals(0, provider.created);
+        ScriptRunnerPool pool = registry.getPool("fk");
+        assertSame(pool, registry.getPool("fk"));
+        assertEquals("fake", pool.getLanguage());
+        assertNotNull(pool.take(""));
+        registry.shutdown();
+        // Started again when wanted after.
+        assertNotSame(pool, registry.getPool("fk"));
+        registry.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnknownExtension() {
+        ScriptRunnerRegistry registry = new ScriptRunnerRegistry(Collections.<ScriptRunnerProvider>emptyList());
+        registry.start(new TurtleEngine());
+        registry.getPool("fk");
+    }
+
+}
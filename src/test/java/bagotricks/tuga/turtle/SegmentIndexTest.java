@@ -0,0 +1,95 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SegmentIndexTest {
+
+    @Test
+    public void testExtendedSegmentIndexedOnce() {
+        Path path = new Path();
+        path.steps.setCompacting(true);
+        SegmentIndex index = new SegmentIndex();
+        path.steps.add(10, 0, true, Color.black);
+        index.update(path);
+        for (int x = 20; x <= 1000; x += 10) {
+            path.steps.add(x, 0, true, Color.black);
+            index.update(path);
+            index.update(path);
+        }
+        assertEquals(2, path.steps.size());
+        int entries = index.entryCount();
+        // Once for each cell the line and its stroke reach, 17 across and 2 down.
+        assertEquals(34, entries);
+        IntList result = new IntList();
+        index.query(path, new Rectangle2D.Double(990, -1, 2, 2), result);
+        assertEquals(1, result.size());
+        assertEquals(1, result.get(0));
+        index.query(path, new Rectangle2D.Double(1100, -1, 2, 2), result);
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void testQueryMatchesBruteForce() {
+        Path path = new Path();
+        SegmentIndex index = new SegmentIndex();
+        double x = 0;
+        double y = 0;
+        for (int i = 1; i <= 5000; i++) {
+            x += 37 * Math.cos(i * 0.37);
+            y += 37 * Math.sin(i * 0.61);
+            path.steps.add(x, y, i % 7 != 0, i % 300 < 150 ? Color.red : Color.blue);
+            if (i % 1000 == 0) {
+                index.update(path);
+            }
+        }
+        index.update(path);
+        Rectangle2D area = new Rectangle2D.Double(x - 100, y - 50, 200, 100);
+        IntList result = new IntList();
+        index.query(path, area, result);
+        double margin = 0.5 * path.width;
+        int found = 0;
+        for (int r = 0; r < result.size(); r++) {
+            int i = result.get(r);
+            assertTrue(path.steps.penDown(i));
+            if (r > 0) {
+                assertTrue(i > result.get(r - 1));
+            }
+        }
+        for (int i = 1; i < path.steps.size(); i++) {
+            Rectangle2D bounds = new Rectangle2D.Double(path.steps.x(i - 1), path.steps.y(i - 1), 0, 0);
+            bounds.add(path.steps.x(i), path.steps.y(i));
+            bounds.setRect(bounds.getX() - margin, bounds.getY() - margin, bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+            if (path.steps.penDown(i) && bounds.intersects(area)) {
+                assertTrue("Missing segment " + i, contains(result, i));
+                found++;
+            }
+        }
+        assertTrue(found > 0);
+    }
+
+    @Test
+    public void testDenseStepsShareEntries() {
+        Path path = new Path();
+        SegmentIndex index = new SegmentIndex();
+        for (int i = 1; i <= 100000; i++) {
+            // Back and forth within a single cell.
+            path.steps.add(i % 2 == 0 ? 10 : 50, 10 + i % 40, true, Color.black);
+        }
+        index.update(path);
+        int chunks = (100000 + SegmentIndex.CHUNK_SIZE - 1) / SegmentIndex.CHUNK_SIZE + 1;
+        assertTrue("Entries " + index.entryCount(), index.entryCount() <= 4 * chunks);
+    }
+
+    private static boolean contains(IntList list, int value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,206 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StepStoreTest {
+
+    private static final double DELTA = 0.0;
+
+    @Test
+    public void testAddAndRead() {
+        StepStore steps = new ArrayStepStore();
+        steps.add(1.5, -2.5, true, Color.red);
+        steps.add(3, 4, false, Color.blue);
+
+        assertEquals(2, steps.size());
+        assertEquals(1.5, steps.x(0), DELTA);
+        assertEquals(-2.5, steps.y(0), DELTA);
+        assertTrue(steps.penDown(0));
+        assertEquals(Color.red, steps.color(0));
+        assertEquals(3.0, steps.x(1), DELTA);
+        assertEquals(4.0, steps.y(1), DELTA);
+        assertFalse(steps.penDown(1));
+        assertEquals(Color.blue, steps.color(1));
+    }
+
+    @Test
+    public void testGrowth() {
+        StepStore steps = new ArrayStepStore();
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            steps.add(i, -i, i % 3 == 0, i % 2 == 0 ? Color.black : Color.green);
+        }
+
+        assertEquals(count, steps.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, steps.x(i), DELTA);
+            assertEquals(-i, steps.y(i), DELTA);
+            assertEquals(i % 3 == 0, steps.penDown(i));
+            assertEquals(i % 2 == 0 ? Color.black : Color.green, steps.color(i));
+        }
+    }
+
+    @Test
+    public void testPaletteIsShared() {
+        StepStore steps = new ArrayStepStore();
+        steps.add(0, 0, false, null);
+        steps.add(0, 1, true, new Color(255, 0, 0));
+        steps.add(0, 2, true, Color.red);
+        steps.add(0, 3, true, Color.blue);
+
+        assertEquals(3, steps.paletteSize());
+        assertNull(steps.color(0));
+        assertEquals(steps.colorIndex(1), steps.colorIndex(2));
+        assertEquals(Color.blue, steps.paletteColor(steps.colorIndex(3)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReadPastEnd() {
+        StepStore steps = new ArrayStepStore();
+        steps.add(0, 0, false, null);
+        steps.x(1);
+    }
+
+    @Test
+    public void testMappedAcrossChunks() throws IOException {
+        File file = File.createTempFile("steps", ".log");
+        MappedStepStore steps = new MappedStepStore(file, 100);
+        try {
+            int count = 1000;
+            for (int i = 0; i < count; i++) {
+                steps.add(i, -i, i % 3 == 0, i % 2 == 0 ? Color.black : Color.green);
+            }
+
+            assertEquals(count, steps.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, steps.x(i), DELTA);
+                assertEquals(-i, steps.y(i), DELTA);
+                assertEquals(i % 3 == 0, steps.penDown(i));
+                assertEquals(i % 2 == 0 ? Color.black : Color.green, steps.color(i));
+            }
+        } finally {
+            steps.close();
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testMappedReadableAfterClose() throws IOException {
+        File directory = File.createTempFile("steps", "");
+        assertTrue(directory.delete() && directory.mkdir());
+        File other = new File(directory, "steps1.log");
+        assertTrue(other.createNewFile());
+        MappedStepStore steps = MappedStepStore.create(directory);
+        // Not this store's to delete.
+        assertTrue(other.exists());
+        steps.add(1, 2, true, Color.black);
+        steps.close();
+        assertFalse(steps.getFile().exists());
+        // A reader still in a pass can finish it.
+        assertEquals(1, steps.size());
+        assertEquals(2, steps.y(0), DELTA);
+        assertTrue(other.delete());
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testDirectoryOfOwnDeletesOnlyLeftovers() throws IOException {
+        File parent = File.createTempFile("steps", "");
+        assertTrue(parent.delete() && parent.mkdir());
+        File user = new File(parent, "steps1.log");
+        assertTrue(user.createNewFile());
+        // As left by a process that ended without cleaning up.
+        File ended = new File(parent, "tuga1");
+        assertTrue(ended.mkdir());
+        assertTrue(new File(ended, "lock").createNewFile());
+        assertTrue(new File(ended, "steps2.log").createNewFile());
+
+        File first = MappedStepStore.createDirectory(parent);
+        assertFalse(ended.exists());
+        assertTrue(user.exists());
+        MappedStepStore steps = MappedStepStore.create(first);
+        steps.add(1, 2, true, Color.black);
+        assertEquals(first, steps.getFile().getParentFile());
+
+        // Another engine starting meanwhile leaves the live one alone.
+        File second = MappedStepStore.createDirectory(parent);
+        assertFalse(first.equals(second));
+        assertTrue(steps.getFile().exists());
+        assertEquals(2, steps.y(0), DELTA);
+        steps.close();
+        assertTrue(user.exists());
+    }
+
+    @Test
+    public void testCompactingMergesStraightRuns() {
+        StepStore steps = new ArrayStepStore();
+        steps.setCompacting(true);
+        steps.add(0, 0, false, null);
+        steps.add(0, 10, true, Color.black);
+        steps.add(0, 20, true, Color.black);
+        steps.add(0, 30, true, Color.black);
+
+        assertEquals(2, steps.size());
+        assertEquals(30, steps.y(1), DELTA);
+
+        // A turn, a color change or lifting the pen all start a new step.
+        steps.add(10, 30, true, Color.black);
+        steps.add(20, 30, true, Color.red);
+        steps.add(30, 30, false, Color.red);
+        // So does going back over the same line.
+        steps.add(20, 30, false, Color.red);
+
+        assertEquals(6, steps.size());
+        assertEquals(10, steps.x(2), DELTA);
+        assertEquals(20, steps.x(3), DELTA);
+        assertEquals(30, steps.x(4), DELTA);
+        assertEquals(20, steps.x(5), DELTA);
+    }
+
+    @Test
+    public void testReaderSeesConsistentPrefix() throws Exception {
+        final StepStore steps = new ArrayStepStore();
+        steps.setCompacting(true);
+        steps.add(0, 0, false, null);
+        final int count = 200000;
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                // A staircase of runs of ten unit steps, so the last step
+                // keeps moving and every tenth step turns.
+                double x = 0;
+                double y = 0;
+                for (int i = 0; i < count; i++) {
+                    if ((i / 10) % 2 == 0) {
+                        x++;
+                    } else {
+                        y++;
+                    }
+                    steps.add(x, y, true, Color.black);
+                }
+            }
+        };
+        writer.start();
+        double[] point = new double[2];
+        int lastSize = 0;
+        while (writer.isAlive() || lastSize < steps.size()) {
+            int size = steps.size();
+            assertTrue(size >= lastSize);
+            lastSize = size;
+            for (int i = Math.max(0, size - 3); i < size; i++) {
+                steps.point(i, point);
+                // Every point is on the staircase.
+                assertTrue(point[1] % 10 == 0 || point[0] % 10 == 0);
+                assertTrue(point[0] - point[1] >= 0 && point[0] - point[1] <= 10);
+                assertTrue(steps.color(i) == null || steps.color(i) == Color.black);
+            }
+        }
+        writer.join();
+        assertEquals(count / 10 + 1, steps.size());
+    }
+
+}
@@ -0,0 +1,90 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TiledExporterTest {
+
+    private static final int WIDTH = 300;
+
+    private static final int HEIGHT = 200;
+
+    @Test
+    public void testSameAsDrawingRenderer() {
+        Drawing drawing = new Drawing();
+        Path path = drawing.lastPath();
+        path.width = 20;
+        double x = 0;
+        double y = 0;
+        for (int i = 1; i <= 200; i++) {
+            x += 60 * Math.cos(i * 1.3);
+            y += 60 * Math.sin(i * 0.7);
+            path.steps.add(x, y, i % 9 != 0, i < 100 ? Color.red : Color.blue);
+        }
+        Path other = new Path();
+        other.width = 8;
+        other.steps.add(-900, -900, true, Color.green);
+        other.steps.add(900, 900, true, Color.green);
+        drawing.paths.add(other);
+        BufferedImage expected = DrawingRenderer.render(drawing, WIDTH, HEIGHT);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Small tiles, so lots of lines cross tile edges.
+            TiledExporter exporter = new TiledExporter(pool, 37);
+            BufferedImage actual = exporter.render(drawing, WIDTH, HEIGHT);
+            exporter.close();
+            assertFalse("Pool belongs to the caller", pool.isShutdown());
+            assertSimilar(expected, actual);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseShutsDownOwnPool() throws Exception {
+        Drawing drawing = new Drawing();
+        drawing.lastPath().width = 100;
+        drawing.lastPath().steps.add(500, 0, true, Color.black);
+        TiledExporter exporter = new TiledExporter();
+        BufferedImage image = exporter.render(drawing, 50, 50);
+        exporter.close();
+        assertEquals(Color.black.getRGB(), image.getRGB(37, 25));
+        try {
+            exporter.render(drawing, 50, 50);
+            fail("Rendered after close");
+        } catch (RuntimeException e) {
+            // Rejected by the pool.
+        }
+    }
+
+    /**
+     * Lines are batched differently per tile, so where they overlap the
+     * antialiased edges can blend a little differently.
+     */
+    private static void assertSimilar(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        int differing = 0;
+        for (int py = 0; py < expected.getHeight(); py++) {
+            for (int px = 0; px < expected.getWidth(); px++) {
+                int a = expected.getRGB(px, py);
+                int b = actual.getRGB(px, py);
+                int difference = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    difference = Math.max(difference, Math.abs((a >> shift & 0xff) - (b >> shift & 0xff)));
+                }
+                if (difference > 64) {
+                    fail("Pixel " + px + ", " + py + " is " + Integer.toHexString(b) + " not " + Integer.toHexString(a));
+                }
+                if (difference > 0) {
+                    differing++;
+                }
+            }
+        }
+        assertTrue("Differing pixels " + differing, differing < expected.getWidth() * expected.getHeight() / 100);
+    }
+
+}
@@ -0,0 +1,156 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TimelineTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testStateAtEveryStep() {
+        Path path = new Path();
+        Turtle turtle = new Turtle();
+        List<Turtle> expected = new ArrayList<Turtle>();
+        expected.add(copy(turtle));
+        int count = 10000;
+        for (int i = 1; i <= count; i++) {
+            turtle.turn(7);
+            if (i % 5 == 0) {
+                turtle.penDown = !turtle.penDown;
+            }
+            if (i % 11 == 0) {
+                turtle.penColor = i % 2 == 0 ? Color.red : Color.blue;
+            }
+            // The state at a step includes what the turtle did up to the next.
+            expected.set(i - 1, copy(turtle));
+            turtle.x += 10 * turtle.getDirectionX();
+            turtle.y += 10 * turtle.getDirectionY();
+            path.steps.add(turtle.x, turtle.y, turtle.penDown, turtle.penColor);
+            expected.add(copy(turtle));
+        }
+        // Left facing another way once done.
+        turtle.turn(100);
+        turtle.penDown = false;
+        expected.set(count, copy(turtle));
+        path.timeline.finished(turtle);
+
+        Turtle actual = new Turtle();
+        for (int step = 0; step <= count; step++) {
+            path.timeline.stateAt(path.steps, step, actual);
+            assertTurtleEquals(expected.get(step), actual);
+        }
+    }
+
+    @Test
+    public void testBackwardAndInPlaceMovesKeepHeading() {
+        Path path = new Path();
+        Turtle turtle = new Turtle();
+        List<Turtle> expected = new ArrayList<Turtle>();
+        List<Turtle> arrived = new ArrayList<Turtle>();
+        expected.add(copy(turtle));
+        arrived.add(copy(turtle));
+        int count = 1000;
+        for (int i = 1; i <= count; i++) {
+            turtle.turn(i % 3 == 0 ? 0 : 13);
+            expected.set(i - 1, copy(turtle));
+            // Backwards, in place, and forwards, as walk -n, walk 0, walk n.
+            double distance = i % 4 == 0 ? -10 : i % 7 == 0 ? 0 : 10;
+            turtle.x += distance * turtle.getDirectionX();
+            turtle.y += distance * turtle.getDirectionY();
+            path.steps.add(turtle.x, turtle.y, turtle.penDown, turtle.penColor);
+            path.timeline.stepped(path.steps, turtle);
+            expected.add(copy(turtle));
+            arrived.add(copy(turtle));
+        }
+        path.timeline.finished(turtle);
+
+        Turtle actual = new Turtle();
+        for (int step = 0; step <= count; step++) {
+            path.timeline.stateAt(path.steps, step, actual);
+            assertTurtleEquals(expected.get(step), actual);
+            path.timeline.arrivedAt(path.steps, step, actual);
+            assertEquals(arrived.get(step).x, actual.x, DELTA);
+            assertEquals(arrived.get(step).y, actual.y, DELTA);
+            assertEquals(arrived.get(step).getAngle(), actual.getAngle(), DELTA);
+        }
+    }
+
+    @Test
+    public void testBackwardRunUnfinished() {
+        Path path = new Path();
+        // Facing up, as it starts.
+        Turtle turtle = new Turtle();
+        for (int i = 1; i <= 3; i++) {
+            turtle.y -= 10;
+            path.steps.add(turtle.x, turtle.y, true, Color.black);
+            path.timeline.stepped(path.steps, turtle);
+        }
+        Turtle actual = new Turtle();
+        // Faces the way it walked from, not the way it went.
+        for (int step = 0; step <= 3; step++) {
+            path.timeline.stateAt(path.steps, step, actual);
+            assertEquals(-10 * step, actual.y, DELTA);
+            assertEquals(90, actual.getAngle(), DELTA);
+        }
+    }
+
+    @Test
+    public void testUnfinishedFacesLastMove() {
+        Path path = new Path();
+        path.steps.add(0, 100, true, Color.red);
+        path.steps.add(-50, 100, false, Color.blue);
+        Turtle actual = new Turtle();
+        path.timeline.stateAt(path.steps, 2, actual);
+        assertEquals(-50, actual.x, DELTA);
+        assertEquals(100, actual.y, DELTA);
+        assertEquals(180, actual.getAngle(), DELTA);
+        assertFalse(actual.penDown);
+        assertEquals(Color.blue, actual.penColor);
+        // Steps past the end show the last.
+        path.timeline.stateAt(path.steps, 10, actual);
+        assertEquals(-50, actual.x, DELTA);
+    }
+
+    @Test
+    public void testMovesInPlaceUseNextMove() {
+        Path path = new Path();
+        path.steps.add(0, 100, true, Color.black);
+        path.steps.add(0, 100, true, Color.black);
+        path.steps.add(0, 100, true, Color.black);
+        path.steps.add(100, 100, true, Color.black);
+        Turtle actual = new Turtle();
+        path.timeline.stateAt(path.steps, 1, actual);
+        assertEquals(0, actual.getAngle(), DELTA);
+        path.timeline.stateAt(path.steps, 2, actual);
+        assertEquals(0, actual.getAngle(), DELTA);
+    }
+
+    @Test
+    public void testNothingDrawn() {
+        Path path = new Path();
+        Turtle actual = new Turtle();
+        actual.x = 5;
+        actual.turn(45);
+        path.timeline.stateAt(path.steps, 0, actual);
+        assertTurtleEquals(new Turtle(), actual);
+    }
+
+    private static void assertTurtleEquals(Turtle expected, Turtle actual) {
+        assertEquals(expected.x, actual.x, DELTA);
+        assertEquals(expected.y, actual.y, DELTA);
+        assertEquals(expected.getAngle(), actual.getAngle(), DELTA);
+        assertEquals(expected.penDown, actual.penDown);
+        assertEquals(expected.penColor, actual.penColor);
+    }
+
+    private static Turtle copy(Turtle turtle) {
+        Turtle copy = new Turtle();
+        copy.set(turtle);
+        return copy;
+    }
+
+}
@@ -1,6 +1,12 @@
 package bagotricks.tuga.turtle;
 
+import bagotricks.tuga.Pacer;
+import bagotricks.tuga.RunListener;
+import bagotricks.tuga.StopException;
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -8,6 +14,15 @@ public class TurtleEngineTest {
 
     private static final double DELTA = 0.01;
 
+    private final List<TurtleEngine> engines = new ArrayList<TurtleEngine>();
+
+    @After
+    public void tearDown() {
+        for (TurtleEngine engine : engines) {
+            engine.dispose();
+        }
+    }
+
     @Test
     public void testWalk() {
         String script
@@ -106,9 +121,181 @@ public class TurtleEngineTest {
         assertDrawingEquals(expected, drawing);
     }
 
-    private Drawing run(String script) {
+    @Test
+    public void testTurnWalk() {
+        String script
+                = "turn_walk [[90, 100], [-90, 50]]";
+        Drawing drawing = run(script);
+        Drawing expected = new Drawing();
+        expected.lastPath().steps.add(new Step(-100.0, 0.0, true, Color.black));
+        expected.lastPath().steps.add(new Step(-100.0, 50.0, true, Color.black));
+
+        assertDrawingEquals(expected, drawing);
+    }
+
+    @Test
+    public void testWalkTo() {
+        String script
+                = "walk_to [30, 40], [30, 0]";
+        Drawing drawing = run(script);
+        Drawing expected = new Drawing();
+        expected.lastPath().steps.add(new Step(30.0, 40.0, true, Color.black));
+        expected.lastPath().steps.add(new Step(30.0, 0.0, true, Color.black));
+
+        assertDrawingEquals(expected, drawing);
+    }
+
+    @Test
+    public void testSpawnedTurtlesDrawOwnPaths() {
+        String script
+                = "for (int k = 0; k < 4; k++) {\n"
+                + "    turn(90);\n"
+                + "    spawn(new TurtleProgram() {\n"
+                + "        public void run(Tuga t) {\n"
+                + "            for (int i = 0; i < 1000; i++) {\n"
+                + "                t.walk(1);\n"
+                + "                t.turn(i % 2 == 0 ? 1 : -1);\n"
+                + "            }\n"
+                + "        }\n"
+                + "    });\n"
+                + "}";
+        TurtleEngine instance = start();
+        instance.execute("", "java", script);
+        Drawing drawing = instance.getDrawing();
+
+        assertEquals(5, drawing.paths.size());
+        assertEquals(1, drawing.paths.get(0).steps.size());
+        for (int k = 1; k <= 4; k++) {
+            StepStore steps = drawing.paths.get(k).steps;
+            // Every turtle finished before the run did, and kept to its path.
+            assertEquals(1001, steps.size());
+            // Half the steps veer a degree off the heading it was spawned with.
+            double angle = Math.toRadians(90 + 90 * k);
+            assertEquals(1000 * Math.cos(angle), steps.x(1000), 10);
+            assertEquals(1000 * Math.sin(angle), steps.y(1000), 10);
+        }
+    }
+
+    @Test
+    public void testSpawnedFailureStopsRun() {
+        String script
+                = "spawn(new TurtleProgram() {\n"
+                + "    public void run(Tuga t) {\n"
+                + "        while (true) {\n"
+                + "            t.walk(1);\n"
+                + "            t.turn(1);\n"
+                + "        }\n"
+                + "    }\n"
+                + "});\n"
+                + "spawn(new TurtleProgram() {\n"
+                + "    public void run(Tuga t) {\n"
+                + "        t.walk(1);\n"
+                + "        throw new IllegalStateException(\"Spawned failure\");\n"
+                + "    }\n"
+                + "});";
+        TurtleEngine instance = start();
+        try {
+            instance.execute("", "java", script);
+            fail("Failure not reported");
+        } catch (IllegalStateException e) {
+            // The endless turtle got stopped rather than keeping the run going.
+            assertEquals("Spawned failure", e.getMessage());
+        }
+        assertEquals(3, instance.getDrawing().paths.size());
+    }
+
+    @Test
+    public void testStaleCachedLogRunsAgain() {
+        String script = "walk(100);";
+        ResultCache cache = new ResultCache(null);
+        String key = ResultCache.key("java", script);
+        // As if from a command log version this one doesn't know.
+        cache.put(key, new byte[]{0x54, 0x75, 0x67, 0x6c, 0x7f});
+        TurtleEngine instance = start();
+        instance.setResultCache(cache);
+        instance.execute("", "java", script);
+        Drawing expected = new Drawing();
+        expected.lastPath().steps.add(new Step(0.0, 100.0, true, Color.black));
+
+        assertDrawingEquals(expected, instance.getDrawing());
+        assertArrayEquals(instance.getLastLog(), cache.get(key));
+    }
+
+    @Test
+    public void testProducerWaitsAtMaxLeadUntilStopped() throws Exception {
+        final TurtleEngine instance = start();
+        // Plays back a step a second, so the script soon gets far ahead.
+        instance.getPacer().setSpeed(Pacer.Mode.STEPS_PER_SECOND, 1);
+        final Throwable[] thrown = new Throwable[1];
+        Thread run = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    instance.execute("", "java", "while (true) {\n walk(1);\n turn(1);\n}");
+                } catch (Throwable e) {
+                    thrown[0] = e;
+                }
+            }
+        };
+        run.start();
+        long deadline = System.currentTimeMillis() + 60000;
+        while (mainSteps(instance) <= TurtleEngine.MAX_LEAD && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        int size = mainSteps(instance);
+        Thread.sleep(200);
+        // Held back a little past the limit, with only a few steps shown.
+        assertTrue("Size " + size, size > TurtleEngine.MAX_LEAD);
+        assertTrue("Size " + size, size < TurtleEngine.MAX_LEAD + 10);
+        // At most one more, if the playback showed a step meanwhile.
+        int later = mainSteps(instance);
+        assertTrue("Grew from " + size + " to " + later, later - size <= 1);
+        assertTrue(run.isAlive());
+
+        instance.stop();
+        run.join(5000);
+        assertFalse("Stop didn't reach the waiting script", run.isAlive());
+        assertTrue(String.valueOf(thrown[0]), thrown[0] instanceof StopException);
+    }
+
+    @Test
+    public void testAnimatedStraightRunShowsEveryWalk() {
+        TurtleEngine instance = start();
+        instance.getPacer().setSpeed(Pacer.Mode.STEPS_PER_SECOND, 1000);
+        final int[] shown = new int[1];
+        instance.setListener(new RunListener() {
+            @Override
+            public void onStep() {
+                shown[0]++;
+            }
+        });
+        instance.execute("", "java", "for (int i = 0; i < 10; i++) {\n    walk(10);\n}");
+        // Each walk is a step of its own to play back and seek to.
+        assertEquals(10, instance.getStepCount());
+        assertEquals(10, shown[0]);
+        StepStore steps = instance.getDrawing().paths.get(0).steps;
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(10 * i, steps.y(i), DELTA);
+        }
+    }
+
+    /**
+     * A run starts with new paths, so look them up every time.
+     */
+    private int mainSteps(TurtleEngine instance) {
+        return instance.getDrawing().paths.get(0).steps.size();
+    }
+
+    private TurtleEngine start() {
         TurtleEngine instance = new TurtleEngine();
         instance.init();
+        engines.add(instance);
+        return instance;
+    }
+
+    private Drawing run(String script) {
+        TurtleEngine instance = start();
         instance.execute("", script);
         Drawing drawing = instance.getDrawing();
         return drawing;
@@ -130,16 +317,14 @@ public class TurtleEngineTest {
         assertEquals(expected.steps.size(), actual.steps.size());
 
         for (int i = 0; i < expected.steps.size(); i++) {
-            Step expectedStep = expected.steps.get(i);
-            Step actualStep = actual.steps.get(i);
-            assertStepEquals(expectedStep, actualStep);
+            assertStepEquals(expected.steps, actual.steps, i);
         }
     }
 
-    private void assertStepEquals(Step expected, Step actual) {
-        assertEquals(expected.color, actual.color);
-        assertEquals(expected.penDown, actual.penDown);
-        assertEquals(expected.x, actual.x, DELTA);
-        assertEquals(expected.y, actual.y, DELTA);
+    private void assertStepEquals(StepStore expected, StepStore actual, int index) {
+        assertEquals(expected.color(index), actual.color(index));
+        assertEquals(expected.penDown(index), actual.penDown(index));
+        assertEquals(expected.x(index), actual.x(index), DELTA);
+        assertEquals(expected.y(index), actual.y(index), DELTA);
     }
 }
@@ -0,0 +1,61 @@
+package bagotricks.tuga.turtle;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TurtleTest {
+
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void testAngleIsNormalized() {
+        Turtle turtle = new Turtle();
+        turtle.turn(-90);
+        assertEquals(0, turtle.getAngle(), 0);
+        turtle.turn(-90);
+        assertEquals(270, turtle.getAngle(), 0);
+        turtle.turn(720 + 180);
+        assertEquals(90, turtle.getAngle(), 0);
+        turtle.turn(-1e-20);
+        assertTrue(turtle.getAngle() >= 0 && turtle.getAngle() < 360);
+    }
+
+    @Test
+    public void testRightAnglesAreExact() {
+        Turtle turtle = new Turtle();
+        double[][] expected = {{0, 1}, {-1, 0}, {0, -1}, {1, 0}};
+        for (int i = 0; i < 40; i++) {
+            double[] direction = expected[i % 4];
+            assertEquals(direction[0], turtle.getDirectionX(), 0);
+            assertEquals(direction[1], turtle.getDirectionY(), 0);
+            turtle.turn(90);
+        }
+    }
+
+    @Test
+    public void testSquareCloses() {
+        Turtle turtle = new Turtle();
+        for (int i = 0; i < 4000; i++) {
+            turtle.x += 100 * turtle.getDirectionX();
+            turtle.y += 100 * turtle.getDirectionY();
+            turtle.turn(-90);
+        }
+        assertEquals(0, turtle.x, 0);
+        assertEquals(0, turtle.y, 0);
+    }
+
+    @Test
+    public void testOtherAngles() {
+        Turtle turtle = new Turtle();
+        for (int angle = -720; angle <= 720; angle += 7) {
+            turtle.setAngle(angle);
+            assertEquals(Math.cos(Math.toRadians(angle)), turtle.getDirectionX(), DELTA);
+            assertEquals(Math.sin(Math.toRadians(angle)), turtle.getDirectionY(), DELTA);
+        }
+        turtle.setAngle(210);
+        assertEquals(-0.5, turtle.getDirectionY(), 0);
+        turtle.setAngle(-45);
+        assertEquals(-turtle.getDirectionX(), turtle.getDirectionY(), 0);
+    }
+
+}
@@ -0,0 +1,165 @@
+package bagotricks.tuga.turtle;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class VectorExporterTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final Pattern SVG_PATH = Pattern.compile("<path stroke=\"#([0-9a-f]{6})\" stroke-width=\"([^\"]*)\" d=\"([^\"]*)\"/>");
+
+    @Test
+    public void testSvgRuns() throws IOException {
+        String svg = new String(svg(knownDrawing(), 0), ASCII);
+        assertTrue(svg.startsWith("<?xml"));
+        assertTrue(svg.endsWith("</svg>\n"));
+        Matcher matcher = SVG_PATH.matcher(svg);
+        assertTrue(matcher.find());
+        assertEquals("ff0000", matcher.group(1));
+        assertEquals("2.5", matcher.group(2));
+        assertEquals("M0 0 L100 0 L100 100.25", matcher.group(3));
+        // The pen went up, then the color changed partway.
+        assertTrue(matcher.find());
+        assertEquals("ff0000", matcher.group(1));
+        assertEquals("M-50 100.25 L-50 -50", matcher.group(3));
+        assertTrue(matcher.find());
+        assertEquals("0000ff", matcher.group(1));
+        assertEquals("M-50 -50 L-200 -25", matcher.group(3));
+        assertFalse(matcher.find());
+    }
+
+    @Test
+    public void testPdfStructure() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VectorExporter.writePdf(knownDrawing(), out, 185);
+        byte[] bytes = out.toByteArray();
+        String pdf = new String(bytes, ASCII);
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+        List<String> points = pdfPoints(pdf);
+        assertEquals(7, points.size());
+        assertEquals("0 0 m", points.get(0));
+        assertEquals("100 0 l", points.get(1));
+        assertEquals("100 100.25 l", points.get(2));
+        assertEquals("-50 100.25 m", points.get(3));
+        assertEquals("-50 -50 l", points.get(4));
+        assertEquals("-50 -50 m", points.get(5));
+        assertEquals("-200 -25 l", points.get(6));
+        assertTrue(pdf.contains("0.1 0 0 0.1 92.5 92.5 cm"));
+        // The length written after the stream matches it.
+        int start = pdf.indexOf("stream\n") + "stream\n".length();
+        int end = pdf.indexOf("\nendstream");
+        Matcher length = Pattern.compile("5 0 obj\n(\\d+)\n").matcher(pdf);
+        assertTrue(length.find());
+        assertEquals(end - start, Integer.parseInt(length.group(1)));
+        // And the cross references point at their objects.
+        Matcher xref = Pattern.compile("(\\d{10}) 00000 n\r\n").matcher(pdf.substring(pdf.indexOf("xref\n")));
+        for (int number = 1; number <= 5; number++) {
+            assertTrue(xref.find());
+            assertTrue(pdf.startsWith(number + " 0 obj\n", Integer.parseInt(xref.group(1))));
+        }
+        Matcher startXref = Pattern.compile("startxref\n(\\d+)\n").matcher(pdf);
+        assertTrue(startXref.find());
+        assertTrue(pdf.startsWith("xref\n", Integer.parseInt(startXref.group(1))));
+    }
+
+    @Test
+    public void testToleranceDropsNearbyPoints() throws IOException {
+        Drawing drawing = new Drawing();
+        Path path = drawing.lastPath();
+        // A wobbly line to the right, then a sharp turn up.
+        path.steps.add(50, 0, true, Color.black);
+        for (int i = 1; i <= 90; i++) {
+            path.steps.add(50 + 5 * i, i % 2 == 0 ? 0.5 : -0.5, true, Color.black);
+        }
+        path.steps.add(500, 300, true, Color.black);
+        assertEquals(93, path.steps.size());
+
+        String exact = new String(svg(drawing, 0), ASCII);
+        assertEquals(93, svgPoints(exact).size());
+        String simplified = new String(svg(drawing, 1), ASCII);
+        List<String> points = svgPoints(simplified);
+        assertEquals(3, points.size());
+        assertEquals("M0 0", points.get(0));
+        assertEquals("L500 0.5", points.get(1));
+        assertEquals("L500 300", points.get(2));
+        // Too tight to drop anything.
+        assertEquals(93, svgPoints(new String(svg(drawing, 0.1), ASCII)).size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VectorExporter.writePdf(drawing, out, 185, 1);
+        List<String> pdfPoints = pdfPoints(new String(out.toByteArray(), ASCII));
+        assertEquals(3, pdfPoints.size());
+        assertEquals("0 0 m", pdfPoints.get(0));
+        assertEquals("500 0.5 l", pdfPoints.get(1));
+        assertEquals("500 300 l", pdfPoints.get(2));
+    }
+
+    @Test
+    public void testToleranceKeepsPointsGoingBack() throws IOException {
+        Drawing drawing = new Drawing();
+        Path path = drawing.lastPath();
+        path.steps.add(100, 0, true, Color.black);
+        path.steps.add(100, 0.25, true, Color.black);
+        // Back along the same line, which a strip alone would swallow.
+        path.steps.add(50, 0.25, true, Color.black);
+        List<String> points = svgPoints(new String(svg(drawing, 1), ASCII));
+        assertEquals(3, points.size());
+        assertEquals("L100 0.25", points.get(1));
+        assertEquals("L50 0.25", points.get(2));
+    }
+
+    private static Drawing knownDrawing() {
+        Drawing drawing = new Drawing();
+        Path path = drawing.lastPath();
+        path.width = 2.5;
+        path.steps.add(100, 0, true, Color.red);
+        path.steps.add(100, 100.25, true, Color.red);
+        path.steps.add(-50, 100.25, false, Color.red);
+        path.steps.add(-50, -50, true, Color.red);
+        path.steps.add(-200, -25, true, Color.blue);
+        return drawing;
+    }
+
+    static byte[] svg(Drawing drawing, double tolerance) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VectorExporter.writeSvg(drawing, out, tolerance);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the moves and lines of all SVG paths, in order
+     */
+    static List<String> svgPoints(String svg) {
+        List<String> points = new ArrayList<String>();
+        Matcher matcher = SVG_PATH.matcher(svg);
+        while (matcher.find()) {
+            for (String point : matcher.group(3).split(" (?=[ML])")) {
+                points.add(point);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * @return the move and line operators of the content stream, in order
+     */
+    static List<String> pdfPoints(String pdf) {
+        List<String> points = new ArrayList<String>();
+        Matcher matcher = Pattern.compile("(?m)^-?[\\d.]+ -?[\\d.]+ [ml]$").matcher(pdf);
+        while (matcher.find()) {
+            points.add(matcher.group());
+        }
+        return points;
+    }
+
+}